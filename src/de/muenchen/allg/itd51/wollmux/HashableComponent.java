@@ -48,6 +48,12 @@ public class HashableComponent
 {
   private XInterface compo;
 
+  /**
+   * Der Hashwert der Oid. Wird nur einmal berechnet, da
+   * UnoRuntime.generateOid(...) nicht ganz billig ist.
+   */
+  private final int hash;
+
   /*
    * Anmerkung: Es mag ineffizient wirken, hier ein Object zu nehmen und immer in
    * XInterface zu casten, aber wegen Bugs in OOo ist es die einzig sichere Methode,
@@ -57,6 +63,7 @@ public class HashableComponent
   {
     this.compo = UNO.XInterface(compo);
     if (this.compo == null) throw new ClassCastException();
+    this.hash = UnoRuntime.generateOid(this.compo).hashCode();
   }
 
   /**
@@ -71,8 +78,7 @@ public class HashableComponent
 
   public int hashCode()
   {
-    if (compo != null) return UnoRuntime.generateOid(compo).hashCode();
-    return 0;
+    return hash;
   }
 
   public boolean equals(Object b)
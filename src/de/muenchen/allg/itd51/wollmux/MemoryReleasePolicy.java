@@ -0,0 +1,155 @@
+/*
+ * Dateiname: MemoryReleasePolicy.java
+ * Projekt  : WollMux
+ * Funktion : Entscheidet, wann der GarbageCollector angestoßen wird.
+ *
+ * Copyright (c) 2019 Landeshauptstadt München
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the European Union Public Licence (EUPL),
+ * version 1.0 (or any later version).
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * European Union Public Licence for more details.
+ *
+ * You should have received a copy of the European Union Public Licence
+ * along with this program. If not, see
+ * http://ec.europa.eu/idabc/en/document/7330
+ *
+ */
+package de.muenchen.allg.itd51.wollmux;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
+
+/**
+ * Ersetzt das bedingungslose System.gc() nach Events und beim Druck in eine
+ * Gesamtdatei. Der GarbageCollector gibt die UNO-Proxies frei, die der WollMux
+ * nicht mehr referenziert. Er wird nur noch angestoßen, wenn
+ *
+ * <ul>
+ * <li>der belegte Heap einen Schwellwert (in Prozent des maximalen Heaps)
+ * überschreitet (GC_HEAP_THRESHOLD, Standard 75),</li>
+ * <li>seit der letzten Freigabe mehr als eine bestimmte Anzahl UNO-Proxies nicht
+ * mehr referenziert wird (GC_PROXY_THRESHOLD, Standard 10000) oder</li>
+ * <li>seit der letzten Freigabe eine bestimmte Anzahl Operationen abgeschlossen
+ * wurde (GC_INTERVAL, Standard 100, 0 schaltet das Kriterium ab).</li>
+ * </ul>
+ *
+ * Die Schwellwerte können in der wollmux.conf gesetzt werden.
+ *
+ * In Java lassen sich UNO-Proxies nicht explizit freigeben, das geschieht erst
+ * beim Finalisieren durch den GarbageCollector. Daher zählen die Operationen die
+ * Proxies, die sie erzeugt haben und danach nicht mehr referenzieren.
+ */
+public class MemoryReleasePolicy
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(MemoryReleasePolicy.class);
+
+  private static MemoryReleasePolicy instance;
+
+  private final int heapThreshold;
+
+  private final long proxyThreshold;
+
+  private final long interval;
+
+  /**
+   * Anzahl der abgeschlossenen Operationen seit der letzten Freigabe.
+   */
+  private long operations = 0;
+
+  /**
+   * Anzahl der nicht mehr referenzierten UNO-Proxies seit der letzten Freigabe.
+   */
+  private long unreferencedProxies = 0;
+
+  private long totalOperations = 0;
+
+  private long collectionsByHeap = 0;
+
+  private long collectionsByProxies = 0;
+
+  private long collectionsByInterval = 0;
+
+  private MemoryReleasePolicy(ConfigThingy conf)
+  {
+    heapThreshold = (int) WollMuxFiles.getLongConfigValue(conf,
+        "GC_HEAP_THRESHOLD", 75);
+    proxyThreshold = WollMuxFiles.getLongConfigValue(conf,
+        "GC_PROXY_THRESHOLD", 10000);
+    interval = WollMuxFiles.getLongConfigValue(conf, "GC_INTERVAL", 100);
+  }
+
+  public static synchronized MemoryReleasePolicy getInstance()
+  {
+    if (instance == null)
+    {
+      instance = new MemoryReleasePolicy(WollMuxFiles.getWollmuxConf());
+    }
+    return instance;
+  }
+
+  /**
+   * Wird nach einer Operation aufgerufen, die viel mit Dokumenten, Cursorn und
+   * anderen UNO-Objekten interagiert hat. Stößt den GarbageCollector an, falls
+   * eines der Kriterien erfüllt ist.
+   *
+   * @param proxies
+   *          Die Anzahl der UNO-Proxies, die die Operation erzeugt hat und nicht
+   *          mehr referenziert (0 wenn unbekannt).
+   */
+  public void operationFinished(int proxies)
+  {
+    boolean collect = false;
+    synchronized (this)
+    {
+      operations++;
+      totalOperations++;
+      unreferencedProxies += proxies;
+
+      Runtime runtime = Runtime.getRuntime();
+      long used = runtime.totalMemory() - runtime.freeMemory();
+      if (used * 100 >= runtime.maxMemory() * heapThreshold)
+      {
+        collectionsByHeap++;
+        collect = true;
+      } else if (unreferencedProxies >= proxyThreshold)
+      {
+        collectionsByProxies++;
+        collect = true;
+      } else if (interval > 0 && operations >= interval)
+      {
+        collectionsByInterval++;
+        collect = true;
+      }
+
+      if (collect)
+      {
+        operations = 0;
+        unreferencedProxies = 0;
+      }
+    }
+
+    if (collect)
+    {
+      LOGGER.trace("Stoße GarbageCollector an: {}", this);
+      System.gc();
+    }
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "MemoryReleasePolicy(heapThreshold=" + heapThreshold
+        + "%, proxyThreshold=" + proxyThreshold + ", interval=" + interval
+        + ", operations=" + totalOperations + ", collectionsByHeap="
+        + collectionsByHeap + ", collectionsByProxies=" + collectionsByProxies
+        + ", collectionsByInterval=" + collectionsByInterval + ")";
+  }
+}
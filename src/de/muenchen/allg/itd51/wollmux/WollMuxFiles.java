@@ -118,6 +118,8 @@ import de.muenchen.allg.itd51.wollmux.core.util.LogConfig;
 import de.muenchen.allg.itd51.wollmux.core.util.Utils;
 import de.muenchen.allg.itd51.wollmux.dialog.Common;
 import de.muenchen.allg.itd51.wollmux.dialog.InfoDialog;
+import de.muenchen.allg.itd51.wollmux.document.ProcessingTrace;
+import de.muenchen.allg.itd51.wollmux.event.EventStatistics;
 
 /**
  *
@@ -486,6 +488,29 @@ public class WollMuxFiles
     return wollmuxConf;
   }
 
+  /**
+   * Liefert den letzten Wert des Schlüssels key aus conf (z.B. der wollmux.conf)
+   * als Zahl. Ist conf null, fehlt der Schlüssel oder ist sein Wert keine Zahl, so
+   * wird defaultValue geliefert.
+   */
+  public static long getLongConfigValue(ConfigThingy conf, String key,
+      long defaultValue)
+  {
+    if (conf == null)
+      return defaultValue;
+    ConfigThingy value = conf.query(key);
+    if (value.count() == 0)
+      return defaultValue;
+    try
+    {
+      return Long.parseLong(value.getLastChild().toString());
+    } catch (NodeNotFoundException | NumberFormatException e)
+    {
+      LOGGER.error(L.m("Ungültiger Wert für %1 in der wollmux.conf.", key), e);
+      return defaultValue;
+    }
+  }
+
   /**
    * Diese Methode liefert den letzten in der Konfigurationsdatei definierten
    * DEFAULT_CONTEXT zurück. Ist in der Konfigurationsdatei keine URL definiert bzw.
@@ -808,9 +833,18 @@ public class WollMuxFiles
       out.write("Maximum Swap Size: " + getSystemMemoryAttribut("TotalSwapSpaceSize")
           + " KB\n");
       out.write("Free Swap Size: " + getSystemMemoryAttribut("FreeSwapSpaceSize") + " KB\n");
+      out.write(MemoryReleasePolicy.getInstance() + "\n");
 
       out.write("===================== END java-memoryinfo ==================\n");
 
+      out.write("===================== START event statistics ==================\n");
+      out.write(EventStatistics.getInstance().getReport());
+      out.write("===================== END event statistics ==================\n");
+
+      out.write("===================== START processing traces ==================\n");
+      out.write(ProcessingTrace.getReport());
+      out.write("===================== END processing traces ==================\n");
+
       out.write("===================== START wollmuxConfFile ==================\n");
       out.flush(); // weil wir gleich direkt auf den Stream zugreifen
       if (getWollMuxConfFile() != null)
@@ -548,7 +548,11 @@ public class WollMuxSingleton
    * @throws IOException
    *           falls von url nicht gelesen werden kann.
    * @author Matthias Benkmann (D-III-ITD 5.1)
+   * @deprecated Öffnet eine zusätzliche Verbindung; stattdessen
+   *             {@link de.muenchen.allg.itd51.wollmux.document.DocumentLoader#checkAvailable(String)}
+   *             verwenden, das das Dokument gleich für die weitere Verwendung lädt.
    */
+  @Deprecated
   public static void checkURL(URL url) throws IOException
   {
     url.openStream().close();
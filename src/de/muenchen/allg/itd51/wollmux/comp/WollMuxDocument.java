@@ -1,6 +1,7 @@
 package de.muenchen.allg.itd51.wollmux.comp;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -25,10 +26,28 @@ class WollMuxDocument implements XWollMuxDocument
 
   private HashMap<String, String> mapDbSpalteToValue;
 
+  /**
+   * Die mit setFormValue gesetzten Werte, die noch nicht übernommen wurden.
+   */
+  private LinkedHashMap<String, String> pendingFormValues;
+
+  /**
+   * Ist true, wenn bereits ein Event zur Übernahme von {@link #pendingFormValues}
+   * aussteht.
+   */
+  private boolean formValuesEventPending;
+
+  /**
+   * Anzahl der Events, die Werte aus {@link #pendingFormValues} übernehmen und
+   * noch nicht vollständig ausgeführt sind.
+   */
+  private int unappliedFormValueEvents;
+
   public WollMuxDocument(XTextDocument doc)
   {
     this.doc = doc;
     this.mapDbSpalteToValue = new HashMap<String, String>();
+    this.pendingFormValues = new LinkedHashMap<>();
   }
 
   /**
@@ -79,6 +98,10 @@ class WollMuxDocument implements XWollMuxDocument
    * garantiert, dass der Befehl ausgeführt wird, bevor updateFormGUI() aufgerufen
    * wurde. Eine Implementierung mit einer Queue ist möglich.
    * 
+   * Die Werte werden gesammelt und von einem einzigen Event übernommen, das alle
+   * bis zu seiner Ausführung gesetzten Werte auf einmal anwendet. Die Methode
+   * wartet daher nicht, bis der Wert gesetzt ist.
+   * 
    * Anmerkung: Eine Liste aller verfügbaren IDs kann über die Methode
    * XWollMuxDocument.getFormValues() gewonnen werden.
    * 
@@ -92,9 +115,53 @@ class WollMuxDocument implements XWollMuxDocument
   @Override
   public void setFormValue(String id, String value)
   {
-    SyncActionListener s = new SyncActionListener();
-    WollMuxEventHandler.getInstance().handleSetFormValue(doc, id, value, s);
-    s.synchronize();
+    synchronized (pendingFormValues)
+    {
+      pendingFormValues.put(id, value);
+      if (formValuesEventPending)
+        return;
+      formValuesEventPending = true;
+      unappliedFormValueEvents++;
+    }
+    WollMuxEventHandler.getInstance().handleSetFormValues(doc,
+        this::takePendingFormValues, e -> formValuesApplied());
+  }
+
+  /**
+   * Vermerkt, dass ein Event von setFormValue vollständig ausgeführt wurde.
+   */
+  private void formValuesApplied()
+  {
+    synchronized (pendingFormValues)
+    {
+      unappliedFormValueEvents--;
+    }
+  }
+
+  /**
+   * Liefert true, wenn gesetzte Formularwerte noch nicht vollständig übernommen
+   * wurden.
+   */
+  private boolean hasUnappliedFormValues()
+  {
+    synchronized (pendingFormValues)
+    {
+      return !pendingFormValues.isEmpty() || unappliedFormValueEvents > 0;
+    }
+  }
+
+  /**
+   * Liefert die noch nicht übernommenen Formularwerte und leert die Sammlung.
+   */
+  private Map<String, String> takePendingFormValues()
+  {
+    synchronized (pendingFormValues)
+    {
+      Map<String, String> values = new LinkedHashMap<>(pendingFormValues);
+      pendingFormValues.clear();
+      formValuesEventPending = false;
+      return values;
+    }
   }
 
   /**
@@ -126,14 +193,20 @@ class WollMuxDocument implements XWollMuxDocument
    * setFormValue()-Kommandos ihre Wirkung im WollMux und im entsprechenden
    * Dokument entfaltet haben.
    * 
+   * Wird die Methode während der Bearbeitung eines Events aufgerufen (z.B. aus
+   * einer Druckfunktion), kehrt sie sofort zurück, da die Werte erst nach dem
+   * aktuellen Event übernommen werden können.
+   * 
    * @author Christoph Lutz (D-III-ITD-D101)
    */
   @Override
   public void updateFormGUI()
   {
-  // Wird implementiert, wenn setFormValue(...) so umgestellt werden soll, dass die
-  // Änderungen vorerst nur in einer queue gesammelt werden und mit dieser Methode
-  // aktiv werden sollen.
+    SyncActionListener s = new SyncActionListener();
+    WollMuxEventHandler.getInstance().handleSetFormValues(doc,
+        this::takePendingFormValues, s);
+    if (!WollMuxEventHandler.getInstance().isEventThread())
+      s.synchronize();
   }
 
   /**
@@ -163,7 +236,9 @@ class WollMuxDocument implements XWollMuxDocument
    * 
    * Jeder Aufruf erzeugt ein komplett neues und unabhängiges Objekt mit allen
    * Einträgen die zu dem Zeitpunkt gültig sind. Eine Änderung der Werte des
-   * Rückgabeobjekts hat daher keine Auswirkung auf den WollMux.
+   * Rückgabeobjekts hat daher keine Auswirkung auf den WollMux. Noch nicht
+   * übernommene setFormValue()-Aufrufe werden vorher ausgeführt, außer während
+   * der Bearbeitung eines Events (siehe {@link #updateFormGUI()}).
    * 
    * @return Array von PropertyValue-Objekten mit den aktuell gesetzten
    *         Formularwerten dieses WollMux-Dokuments. Gibt es keine Formularwerte
@@ -174,6 +249,9 @@ class WollMuxDocument implements XWollMuxDocument
   @Override
   public PropertyValue[] getFormValues()
   {
+    if (hasUnappliedFormValues()
+        && !WollMuxEventHandler.getInstance().isEventThread())
+      updateFormGUI();
     UnoProps p = new UnoProps();
     TextDocumentModel model =
       DocumentManager.getTextDocumentController(doc).getModel();
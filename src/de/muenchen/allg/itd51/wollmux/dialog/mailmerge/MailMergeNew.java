@@ -1160,59 +1160,69 @@ public class MailMergeNew implements MailMergeParams.MailMergeController
 
     int index = -1;
     int serienbriefNummer = 1;
-    while (iter.hasNext() && selectedIdx >= 0)
+    try
     {
-      if (pmod.isCanceled()) {
-        return;
-      }
+      while (iter.hasNext() && selectedIdx >= 0)
+      {
+        if (pmod.isCanceled()) {
+          return;
+        }
 
-      Dataset ds = iter.next();
-      if (++index < selectedIdx) {
-        continue;
-      }
+        Dataset ds = iter.next();
+        if (++index < selectedIdx) {
+          continue;
+        }
 
-      int datensatzNummer = index + 1; // same as datensatzNummer = selectedIdx+1;
+        int datensatzNummer = index + 1; // same as datensatzNummer = selectedIdx+1;
 
-      if (selIter.hasNext())
-        selectedIdx = selIter.next();
-      else
-        selectedIdx = -1;
+        if (selIter.hasNext())
+          selectedIdx = selIter.next();
+        else
+          selectedIdx = -1;
 
-      if (simProc != null) {
-        documentController.startSimulation();
-      }
+        if (simProc != null) {
+          documentController.startSimulation();
+        }
 
-      HashMap<String, String> dataSetExport = new HashMap<>();
-      try
-      {
-        pmod.setPropertyValue(PROP_DATASET_EXPORT, dataSetExport);
-      }
-      catch (Exception x)
-      {}
+        HashMap<String, String> dataSetExport = new HashMap<>();
+        try
+        {
+          pmod.setPropertyValue(PROP_DATASET_EXPORT, dataSetExport);
+        }
+        catch (Exception x)
+        {}
 
-      for(String spalte : schema)
-      {
-        String value = ds.get(spalte);
-        pmod.setFormValue(spalte, value);
-        dataSetExport.put(spalte, value);
-      }
-      pmod.setFormValue(MailMergeParams.TAG_DATENSATZNUMMER, "" + datensatzNummer);
-      dataSetExport.put(MailMergeParams.TAG_DATENSATZNUMMER, "" + datensatzNummer);
-      pmod.setFormValue(MailMergeParams.TAG_SERIENBRIEFNUMMER, ""
-        + serienbriefNummer);
-      dataSetExport.put(MailMergeParams.TAG_SERIENBRIEFNUMMER, ""
-        + serienbriefNummer);
-
-      // Weiterreichen des Drucks an die nächste Druckfunktion. Dies findet nicht
-      // statt, wenn simProc != null ist, da die Verarbeitung in diesem Fall über
-      // simProc durchgeführt wird.
-      if (simProc == null)
-        pmod.printWithProps();
-      else
-        simProc.processSimulationResults(documentController.stopSimulation());
+        for(String spalte : schema)
+        {
+          String value = ds.get(spalte);
+          pmod.setFormValue(spalte, value);
+          dataSetExport.put(spalte, value);
+        }
+        pmod.setFormValue(MailMergeParams.TAG_DATENSATZNUMMER, "" + datensatzNummer);
+        dataSetExport.put(MailMergeParams.TAG_DATENSATZNUMMER, "" + datensatzNummer);
+        pmod.setFormValue(MailMergeParams.TAG_SERIENBRIEFNUMMER, ""
+          + serienbriefNummer);
+        dataSetExport.put(MailMergeParams.TAG_SERIENBRIEFNUMMER, ""
+          + serienbriefNummer);
+
+        // Weiterreichen des Drucks an die nächste Druckfunktion. Dies findet nicht
+        // statt, wenn simProc != null ist, da die Verarbeitung in diesem Fall über
+        // simProc durchgeführt wird.
+        if (simProc == null)
+          pmod.printWithProps();
+        else
+          simProc.processSimulationResults(documentController.stopSimulation());
 
-      pmod.setPrintProgressValue((short) serienbriefNummer);
-      ++serienbriefNummer;
+        pmod.setPrintProgressValue((short) serienbriefNummer);
+        ++serienbriefNummer;
+      }
+    }
+    finally
+    {
+      // Die für die Simulationen gelesenen Inhalte gelten nur für diesen
+      // Seriendruck.
+      if (simProc != null)
+        documentController.endSimulationSession();
     }
   }
 
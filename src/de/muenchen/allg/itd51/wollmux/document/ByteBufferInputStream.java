@@ -7,16 +7,23 @@ import com.sun.star.io.XInputStream;
 import com.sun.star.io.XSeekable;
 
 /**
- * Wrapper für ByteBuffer zur Benutzung mit UNO.
+ * Wrapper für ByteBuffer zur Benutzung mit UNO. Jeder Stream liest über eine
+ * eigene, schreibgeschützte Sicht auf den Buffer, so dass mehrere Streams
+ * gleichzeitig denselben (z.B. gecachten) Buffer lesen können, ohne sich die
+ * Leseposition gegenseitig zu verändern.
  */
 public class ByteBufferInputStream implements XInputStream, XSeekable
 {
 
   private ByteBuffer buffer;
 
+  /**
+   * Erzeugt einen Stream, der den Inhalt von buffer ab dessen aktueller Position
+   * liest. Position und Limit von buffer werden dabei nicht verändert.
+   */
   public ByteBufferInputStream(ByteBuffer buffer)
   {
-    this.buffer = buffer;
+    this.buffer = buffer.asReadOnlyBuffer();
   }
 
   @Override
@@ -31,6 +38,10 @@ public class ByteBufferInputStream implements XInputStream, XSeekable
     buffer = null;
   }
 
+  /**
+   * Liest bis zu len Bytes in ein neues Array, da der Aufrufer data[0] behalten
+   * darf.
+   */
   @Override
   public int readBytes(byte[][] data, int len) throws IOException
   {
@@ -39,6 +50,9 @@ public class ByteBufferInputStream implements XInputStream, XSeekable
     {
       data[0] = new byte[n];
       buffer.get(data[0], 0, n);
+    } else
+    {
+      data[0] = new byte[0];
     }
     return n;
   }
@@ -52,13 +66,13 @@ public class ByteBufferInputStream implements XInputStream, XSeekable
   @Override
   public void skipBytes(int n) throws IOException
   {
-    buffer.position(buffer.position() + n);
+    buffer.position(buffer.position() + Math.min(n, buffer.remaining()));
   }
 
   @Override
   public long getLength() throws IOException
   {
-    return buffer.capacity();
+    return buffer.limit();
   }
 
   @Override
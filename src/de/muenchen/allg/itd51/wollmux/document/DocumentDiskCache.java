@@ -0,0 +1,331 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
+import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
+import de.muenchen.allg.itd51.wollmux.core.util.L;
+
+/**
+ * Speichert die vom {@link DocumentLoader} geladenen Dokumente im
+ * WollMux-Verzeichnis, damit sie nach einem Neustart nicht erneut vom
+ * Vorlagen-Server geladen werden müssen.
+ *
+ * Vor der Verwendung einer Kopie wird geprüft, ob sie noch aktuell ist: bei
+ * HTTP-URLs über ETag bzw. Last-Modified, bei file-URLs über Änderungsdatum und
+ * Größe der Datei. Antwortet der Server nicht innerhalb von
+ * DOCUMENT_CACHE_TIMEOUT Millisekunden (Standard 5000) oder ist er nicht
+ * erreichbar, wird die vorhandene Kopie verwendet. Eine zu langsame Prüfung läuft
+ * im Hintergrund weiter und aktualisiert die Kopie für das nächste Mal. Derselbe
+ * Wert begrenzt auch den Verbindungsaufbau und jeden einzelnen Lesevorgang, damit
+ * kein Laden und keine Prüfung an einem hängenden Server endlos wartet.
+ *
+ * Der Cache wird auf DOCUMENT_CACHE_SIZE Megabyte (Standard 200) begrenzt, wobei
+ * die am längsten nicht verwendeten Dokumente zuerst gelöscht werden. Mit
+ * DOCUMENT_CACHE_SIZE "0" in der wollmux.conf wird der Cache abgeschaltet.
+ */
+class DocumentDiskCache
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(DocumentDiskCache.class);
+
+  private static final String DIRECTORY = "documentcache";
+
+  private static final String DATA_SUFFIX = ".data";
+
+  private static final String META_SUFFIX = ".properties";
+
+  private static final String URL = "url";
+
+  private static final String ETAG = "etag";
+
+  private static final String LAST_MODIFIED = "lastModified";
+
+  private static final String FILE_TIME = "fileTime";
+
+  private static final String FILE_SIZE = "fileSize";
+
+  /**
+   * Maximale Anzahl gleichzeitiger Prüfungen. Weitere Prüfungen warten, bis ein
+   * Thread frei wird.
+   */
+  private static final int REVALIDATION_THREADS = 4;
+
+  private final File dir;
+
+  private final long maxSize;
+
+  private final int timeout;
+
+  /**
+   * Führt die Prüfungen aus, damit auf langsame Server nicht länger als
+   * {@link #timeout} gewartet werden muss.
+   */
+  private final ExecutorService revalidationThreads = Executors
+      .newFixedThreadPool(REVALIDATION_THREADS, new ThreadFactoryBuilder()
+          .setNameFormat("WollMux Document Revalidation %d").setDaemon(true)
+          .build());
+
+  private DocumentDiskCache(File dir, long maxSize, int timeout)
+  {
+    this.dir = dir;
+    this.maxSize = maxSize;
+    this.timeout = timeout;
+  }
+
+  /**
+   * Erzeugt den Cache im Verzeichnis wollmuxDir.
+   *
+   * @return Der Cache oder null, wenn er abgeschaltet ist oder das Verzeichnis
+   *         nicht angelegt werden kann.
+   */
+  static DocumentDiskCache create(ConfigThingy conf, File wollmuxDir)
+  {
+    if (wollmuxDir == null)
+      return null;
+    long size = WollMuxFiles.getLongConfigValue(conf, "DOCUMENT_CACHE_SIZE",
+        200);
+    if (size <= 0)
+      return null;
+
+    File dir = new File(wollmuxDir, DIRECTORY);
+    if (!dir.isDirectory() && !dir.mkdirs())
+    {
+      LOGGER.error(L.m("Das Verzeichnis %1 kann nicht angelegt werden.", dir));
+      return null;
+    }
+    return new DocumentDiskCache(dir, size * 1024 * 1024,
+        (int) WollMuxFiles.getLongConfigValue(conf, "DOCUMENT_CACHE_TIMEOUT",
+            5000));
+  }
+
+  /**
+   * Liefert den Inhalt des Dokuments url. Ist eine aktuelle Kopie vorhanden, wird
+   * diese geliefert, ansonsten wird das Dokument geladen und gespeichert.
+   *
+   * @throws IOException
+   *           Wenn das Dokument nicht geladen werden kann und keine Kopie vorhanden
+   *           ist.
+   */
+  byte[] load(URL url) throws IOException
+  {
+    String key = Hashing.sha256()
+        .hashString(url.toExternalForm(), StandardCharsets.UTF_8).toString();
+    File data = new File(dir, key + DATA_SUFFIX);
+    File metaFile = new File(dir, key + META_SUFFIX);
+    Properties meta = readMeta(metaFile, url);
+    if (meta == null || !data.isFile())
+      return fetch(url, data, metaFile, null);
+
+    CompletableFuture<byte[]> revalidation = CompletableFuture.supplyAsync(() -> {
+      try
+      {
+        return fetch(url, data, metaFile, meta);
+      } catch (IOException e)
+      {
+        throw new UncheckedIOException(e);
+      }
+    }, revalidationThreads);
+
+    try
+    {
+      byte[] content = revalidation.get(timeout, TimeUnit.MILLISECONDS);
+      if (content != null)
+        return content;
+    } catch (TimeoutException e)
+    {
+      LOGGER.info(L.m(
+          "Der Server für '%1' antwortet nicht rechtzeitig, verwende gespeicherte Kopie.",
+          url));
+    } catch (ExecutionException e)
+    {
+      LOGGER.info(L.m(
+          "Das Dokument '%1' kann nicht geladen werden, verwende gespeicherte Kopie.",
+          url), e.getCause());
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    data.setLastModified(System.currentTimeMillis());
+    return FileUtils.readFileToByteArray(data);
+  }
+
+  /**
+   * Lädt das Dokument, falls sich gegenüber der Kopie mit den Metadaten meta etwas
+   * geändert hat, und speichert es.
+   *
+   * @return Den neuen Inhalt oder null, wenn die Kopie noch aktuell ist.
+   */
+  private byte[] fetch(URL url, File data, File metaFile, Properties meta)
+      throws IOException
+  {
+    Properties newMeta = new Properties();
+    newMeta.setProperty(URL, url.toExternalForm());
+    byte[] content;
+
+    if ("file".equalsIgnoreCase(url.getProtocol()))
+    {
+      File file;
+      try
+      {
+        file = new File(url.toURI());
+      } catch (URISyntaxException | IllegalArgumentException e)
+      {
+        throw new IOException(e);
+      }
+      long time = file.lastModified();
+      long size = file.length();
+      if (meta != null && String.valueOf(time).equals(meta.getProperty(FILE_TIME))
+          && String.valueOf(size).equals(meta.getProperty(FILE_SIZE)))
+        return null;
+      content = FileUtils.readFileToByteArray(file);
+      newMeta.setProperty(FILE_TIME, String.valueOf(time));
+      newMeta.setProperty(FILE_SIZE, String.valueOf(size));
+    } else
+    {
+      URLConnection conn = url.openConnection();
+      conn.setConnectTimeout(timeout);
+      conn.setReadTimeout(timeout);
+      if (conn instanceof HttpURLConnection)
+      {
+        HttpURLConnection http = (HttpURLConnection) conn;
+        if (meta != null)
+        {
+          if (meta.getProperty(ETAG) != null)
+            http.setRequestProperty("If-None-Match", meta.getProperty(ETAG));
+          if (meta.getProperty(LAST_MODIFIED) != null)
+            http.setIfModifiedSince(Long.parseLong(meta.getProperty(LAST_MODIFIED)));
+        }
+        int code = http.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null)
+        {
+          http.disconnect();
+          return null;
+        }
+        if (code != HttpURLConnection.HTTP_OK)
+        {
+          http.disconnect();
+          throw new IOException(L.m("Der Server liefert für '%1' den Status %2.",
+              url, code));
+        }
+        if (http.getHeaderField("ETag") != null)
+          newMeta.setProperty(ETAG, http.getHeaderField("ETag"));
+        if (http.getLastModified() > 0)
+          newMeta.setProperty(LAST_MODIFIED, String.valueOf(http.getLastModified()));
+      }
+      try (InputStream in = conn.getInputStream())
+      {
+        content = IOUtils.toByteArray(in);
+      }
+    }
+
+    store(data, metaFile, content, newMeta);
+    return content;
+  }
+
+  private void store(File data, File metaFile, byte[] content, Properties meta)
+  {
+    try
+    {
+      File tmp = File.createTempFile("document", ".tmp", dir);
+      FileUtils.writeByteArrayToFile(tmp, content);
+      Files.move(tmp.toPath(), data.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      File metaTmp = File.createTempFile("meta", ".tmp", dir);
+      try (OutputStream out = new FileOutputStream(metaTmp))
+      {
+        meta.store(out, null);
+      }
+      Files.move(metaTmp.toPath(), metaFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e)
+    {
+      LOGGER.error(L.m("Das Dokument kann nicht in %1 gespeichert werden.", dir), e);
+      return;
+    }
+    evict();
+  }
+
+  /**
+   * Löscht die am längsten nicht verwendeten Dokumente, bis der Cache nicht mehr
+   * größer als {@link #maxSize} ist.
+   */
+  private synchronized void evict()
+  {
+    File[] files = dir.listFiles((d, name) -> name.endsWith(DATA_SUFFIX));
+    if (files == null)
+      return;
+    long size = 0;
+    for (File file : files)
+      size += file.length();
+    if (size <= maxSize)
+      return;
+
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (File file : files)
+    {
+      if (size <= maxSize)
+        break;
+      size -= file.length();
+      String name = file.getName();
+      File metaFile = new File(dir,
+          name.substring(0, name.length() - DATA_SUFFIX.length()) + META_SUFFIX);
+      if (!file.delete())
+        LOGGER.debug(L.m("%1 kann nicht gelöscht werden.", file));
+      if (metaFile.exists() && !metaFile.delete())
+        LOGGER.debug(L.m("%1 kann nicht gelöscht werden.", metaFile));
+    }
+  }
+
+  /**
+   * Liest die Metadaten der Kopie von url.
+   *
+   * @return Die Metadaten oder null, wenn keine Kopie von url existiert.
+   */
+  private static Properties readMeta(File metaFile, URL url)
+  {
+    if (!metaFile.isFile())
+      return null;
+    Properties meta = new Properties();
+    try (InputStream in = new FileInputStream(metaFile))
+    {
+      meta.load(in);
+    } catch (IOException e)
+    {
+      LOGGER.debug("", e);
+      return null;
+    }
+    return url.toExternalForm().equals(meta.getProperty(URL)) ? meta : null;
+  }
+}
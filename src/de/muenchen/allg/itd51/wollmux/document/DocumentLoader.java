@@ -5,16 +5,27 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.sun.star.beans.PropertyState;
 import com.sun.star.beans.PropertyValue;
 import com.sun.star.io.XInputStream;
@@ -24,26 +35,70 @@ import com.sun.star.uno.Exception;
 
 import de.muenchen.allg.afid.UNO;
 import de.muenchen.allg.afid.UnoHelperException;
+import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
 import de.muenchen.allg.itd51.wollmux.core.util.L;
 
 /**
  * Funktionen zum Laden und Einfügen von Dokumenten. Geladene Dokumente werden
- * gecacht.
+ * im Speicher und zusätzlich im WollMux-Verzeichnis (siehe
+ * {@link DocumentDiskCache}) gecacht. Der Speicher-Cache wird auf
+ * DOCUMENT_MEMORY_CACHE_SIZE Megabyte (Standard 64) in der wollmux.conf begrenzt.
+ * Ein einzelnes Dokument, das größer ist, wird nicht im Speicher gehalten.
  */
 public class DocumentLoader
 {
   private static final Logger LOGGER = LoggerFactory
     .getLogger(DocumentLoader.class);
 
+  /**
+   * Anzahl der Dokumente, die von {@link #prefetch(Collection)} gleichzeitig
+   * geladen werden.
+   */
+  private static final int PREFETCH_THREADS = 8;
+
+
+  /**
+   * Anzahl der Sekunden, in denen eine URL nach einem fehlgeschlagenen Download
+   * nicht erneut versucht wird.
+   */
+  private static final long FAILED_URL_TIMEOUT = 30;
+
   private static DocumentLoader instance;
   private LoadingCache<URL, ByteBuffer> cache;
 
+  /**
+   * Die auf der Festplatte gespeicherten Dokumente oder null, wenn dieser Cache
+   * abgeschaltet ist.
+   */
+  private DocumentDiskCache diskCache;
+
+  /**
+   * URLs, deren Download kürzlich fehlgeschlagen ist, mit dem aufgetretenen
+   * Fehler. So werden bei mehreren alternativen URLs nicht erreichbare Server
+   * schnell übersprungen.
+   */
+  private final Cache<String, IOException> failedUrls = CacheBuilder.newBuilder()
+      .expireAfterWrite(FAILED_URL_TIMEOUT, TimeUnit.SECONDS).maximumSize(1000)
+      .build();
+
+  /**
+   * Die SHA-256-Hashes der Dokumente im Cache. Der Schlüssel ist der Buffer selbst
+   * (Vergleich über Identität), so dass ein neu geladenes Dokument neu gehasht
+   * wird.
+   */
+  private final Cache<ByteBuffer, String> contentHashes = CacheBuilder
+      .newBuilder().weakKeys().build();
+
+  private final ExecutorService prefetchThreads = Executors.newFixedThreadPool(
+      PREFETCH_THREADS, new ThreadFactoryBuilder()
+          .setNameFormat("WollMux Document Prefetch %d").setDaemon(true).build());
+
   /**
    * Zugriff auf den DocumentLoader als Singleton.
    * 
    * @return Singleton-Instanz des DocumentLoaders
    */
-  public static DocumentLoader getInstance()
+  public static synchronized DocumentLoader getInstance()
   {
     if (instance == null)
     {
@@ -54,8 +109,17 @@ public class DocumentLoader
 
   private DocumentLoader()
   {
+    diskCache = DocumentDiskCache.create(WollMuxFiles.getWollmuxConf(),
+        WollMuxFiles.getWollMuxDir());
+    long maxCacheBytes = WollMuxFiles.getLongConfigValue(
+        WollMuxFiles.getWollmuxConf(), "DOCUMENT_MEMORY_CACHE_SIZE", 64) * 1024
+        * 1024;
+    // Nur ein Segment, damit das Limit für jedes Dokument gilt und nicht auf die
+    // Segmente aufgeteilt wird.
     cache = CacheBuilder.newBuilder()
-      .maximumSize(50)
+      .concurrencyLevel(1)
+      .maximumWeight(maxCacheBytes)
+      .weigher((URL url, ByteBuffer buf) -> buf.capacity())
       .expireAfterAccess(8, TimeUnit.HOURS)
       .build(new CacheLoader<URL, ByteBuffer>()
       {
@@ -67,20 +131,147 @@ public class DocumentLoader
       });
   }
 
-  private ByteBuffer downloadDocument(URL url)
+  private ByteBuffer downloadDocument(URL url) throws IOException
   {
-    byte[] buf = null;
-    try (InputStream in = url.openStream())
+    try
     {
-      buf = IOUtils.toByteArray(in);
+      if (diskCache != null)
+      {
+        return ByteBuffer.wrap(diskCache.load(url));
+      }
+
+      try (InputStream in = url.openStream())
+      {
+        return ByteBuffer.wrap(IOUtils.toByteArray(in));
+      }
     } catch (IOException e)
     {
       LOGGER.error(
         L.m("Die Vorlage mit der URL '%1' kann nicht geöffnet werden.", url),
         e);
+      throw e;
+    }
+  }
+
+  /**
+   * Lädt alle noch nicht gecachten Dokumente aus paths parallel in den Cache und
+   * kehrt zurück, wenn alle Downloads beendet sind. Fehler werden ignoriert, sie
+   * treten beim anschließenden Einfügen erneut auf und werden dort behandelt.
+   *
+   * @param paths
+   *          URLs der Dokumente in der Form, in der sie später
+   *          {@link #insertDocument(Object, String)} übergeben werden.
+   */
+  public void prefetch(Collection<String> paths)
+  {
+    List<CompletableFuture<Void>> downloads = new ArrayList<>();
+    for (String path : new LinkedHashSet<>(paths))
+    {
+      URL url;
+      try
+      {
+        url = new URL(path);
+      } catch (MalformedURLException e)
+      {
+        LOGGER.debug("", e);
+        continue;
+      }
+      if (cache.getIfPresent(url) != null)
+        continue;
+
+      downloads.add(CompletableFuture.runAsync(() -> {
+        try
+        {
+          checkAvailable(path);
+        } catch (IOException e)
+        {
+          LOGGER.debug(L.m("Das Dokument '%1' konnte nicht vorab geladen werden.",
+              url), e);
+        }
+      }, prefetchThreads));
     }
 
-    return ByteBuffer.wrap(buf);
+    if (!downloads.isEmpty())
+    {
+      LOGGER.debug(L.m("Lade %1 Dokumente vorab.", downloads.size()));
+      CompletableFuture.allOf(downloads.toArray(new CompletableFuture<?>[0]))
+          .join();
+    }
+  }
+
+  /**
+   * Lädt das Dokument path in den Cache, falls es dort noch nicht ist, und prüft
+   * damit, ob es verfügbar ist. Das anschließende Einfügen bzw. Öffnen mit
+   * {@link #insertDocument(Object, String)},
+   * {@link #loadDocument(String, boolean, boolean)} oder
+   * {@link #openDocument(String, boolean, boolean)} benötigt keinen weiteren
+   * Download. Ist der Download von path kürzlich fehlgeschlagen, wird der Fehler
+   * sofort erneut geworfen.
+   *
+   * @param path
+   *          URL des Dokuments
+   * @throws IOException
+   *           falls das Dokument nicht geladen werden kann.
+   */
+  public void checkAvailable(String path) throws IOException
+  {
+    get(path);
+  }
+
+  /**
+   * Liefert den SHA-256-Hash des Dokuments path, wie es von
+   * {@link #insertDocument(Object, String)} bzw.
+   * {@link #loadDocument(String, boolean, boolean)} verwendet wird. Der Hash wird
+   * nur einmal pro geladenem Inhalt berechnet.
+   *
+   * @param path
+   *          URL des Dokuments
+   * @throws IOException
+   *           falls das Dokument nicht geladen werden kann.
+   */
+  public String getContentHash(String path) throws IOException
+  {
+    ByteBuffer buf = get(path);
+    String hash = contentHashes.getIfPresent(buf);
+    if (hash == null)
+    {
+      hash = Hashing.sha256().hashBytes(buf.asReadOnlyBuffer()).toString();
+      contentHashes.put(buf, hash);
+    }
+    return hash;
+  }
+
+  /**
+   * Liefert die Größe des Dokuments path in Bytes.
+   *
+   * @param path
+   *          URL des Dokuments
+   * @throws IOException
+   *           falls das Dokument nicht geladen werden kann.
+   */
+  public long getContentLength(String path) throws IOException
+  {
+    return get(path).capacity();
+  }
+
+  private ByteBuffer get(String path) throws IOException
+  {
+    IOException failure = failedUrls.getIfPresent(path);
+    if (failure != null)
+    {
+      throw new IOException(failure.getLocalizedMessage(), failure);
+    }
+
+    try
+    {
+      return cache.get(new URL(path));
+    } catch (ExecutionException | UncheckedExecutionException e)
+    {
+      failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+          : new IOException(e.getCause());
+      failedUrls.put(path, failure);
+      throw failure;
+    }
   }
 
   /**
@@ -138,4 +329,31 @@ public class DocumentLoader
 
     return null;
   }
+
+  /**
+   * Öffnet das Dokument path aus dem Cache. Anders als bei
+   * {@link #loadDocument(String, boolean, boolean)} wird kein Filter vorgegeben,
+   * so dass die Typerkennung des Office auch Dokumente in anderen Formaten als ODF
+   * öffnet.
+   *
+   * @param path
+   *          URL des Dokuments
+   * @param asTemplate
+   *          behandelt das Dokument als Template
+   * @param hidden
+   *          öffnet das Dokument unsichtbar
+   * @throws IOException
+   *           falls das Dokument nicht geladen werden kann.
+   * @throws UnoHelperException
+   *           falls das Office das Dokument nicht öffnen kann.
+   */
+  public XComponent openDocument(String path, boolean asTemplate,
+      boolean hidden) throws IOException, UnoHelperException
+  {
+    XInputStream in = new ByteBufferInputStream(get(path));
+    return UNO.loadComponentFromURL(path, asTemplate, true,
+        new PropertyValue("InputStream", -1, in, PropertyState.DIRECT_VALUE),
+        new PropertyValue("Hidden", -1, Boolean.valueOf(hidden),
+            PropertyState.DIRECT_VALUE));
+  }
 }
@@ -405,6 +405,17 @@ public class DocumentManager
       return false;
     }
 
+    /**
+     * Liefert das Textdokument, zu dem dieses Info-Objekt gehört, oder null, wenn
+     * es sich nicht um ein Textdokument handelt. Im Gegensatz zu
+     * {@link #getTextDocumentController()} wird dabei kein TextDocumentModel
+     * angelegt.
+     */
+    public XTextDocument getTextDocument()
+    {
+      return null;
+    }
+
     /**
      * Setzt das Flag, das mit {@link #isProcessingFinished()} abgefragt wird auf
      * true.
@@ -453,6 +464,12 @@ public class DocumentManager
       return getTextDocumentController().getModel() != null;
     }
 
+    @Override
+    public XTextDocument getTextDocument()
+    {
+      return doc;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,439 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.star.lang.XComponent;
+import com.sun.star.text.XTextDocument;
+
+import de.muenchen.allg.afid.UNO;
+import de.muenchen.allg.afid.UnoHelperException;
+import de.muenchen.allg.afid.UnoProps;
+import de.muenchen.allg.itd51.wollmux.HashableComponent;
+import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
+import de.muenchen.allg.itd51.wollmux.core.parser.InvalidIdentifierException;
+import de.muenchen.allg.itd51.wollmux.core.util.L;
+
+/**
+ * Speichert Vorlagen, nachdem alle Textfragmente eingefügt und die Einfügemarken
+ * entfernt wurden, damit die Expansion beim nächsten Öffnen derselben Vorlage
+ * nicht wiederholt werden muss. Die benutzerspezifischen Schritte (insertValue,
+ * Formulare, ...) sind nicht im gespeicherten Dokument enthalten und werden bei
+ * jedem Öffnen ausgeführt.
+ *
+ * Ein Eintrag wird über die URL der Vorlage und die URLs für insertContent
+ * gefunden. Verwendet wird er nur, wenn sich weder die Vorlage noch eines der
+ * eingefügten Textfragmente geändert hat (Vergleich über SHA-256 der vom
+ * {@link DocumentLoader} geladenen Inhalte) und die FRAG_IDs in der wollmux.conf
+ * noch auf dieselben URLs verweisen.
+ *
+ * Die Prüfung lädt alle benötigten Dokumente parallel über
+ * {@link DocumentLoader#prefetch(java.util.Collection)}. Beim Speichern wird nur
+ * das Dokument selbst während der Bearbeitung geschrieben, Manifest und
+ * Aufräumen erfolgen im Hintergrund.
+ *
+ * Der Cache ist nur aktiv, wenn in der wollmux.conf TEMPLATE_CACHE_SIZE auf die
+ * Anzahl der zu speichernden Vorlagen gesetzt ist. Die am längsten nicht
+ * verwendeten Vorlagen werden zuerst gelöscht.
+ */
+public class ExpandedTemplateCache
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(ExpandedTemplateCache.class);
+
+  private static final String DIRECTORY = "templatecache";
+
+  private static final String DOCUMENT_SUFFIX = ".odt";
+
+  private static final String MANIFEST_SUFFIX = ".json";
+
+  private static ExpandedTemplateCache instance;
+
+  private static boolean initialized = false;
+
+  private final File dir;
+
+  private final int maxEntries;
+
+  /**
+   * Die geöffneten Vorlagen, deren Expansion nach der Bearbeitung gespeichert
+   * werden soll.
+   */
+  private final Map<HashableComponent, Entry> pending = new ConcurrentHashMap<>();
+
+  /**
+   * Schreibt die Manifeste, damit die Bearbeitung des Dokuments nicht auf die
+   * Berechnung der Hashes warten muss.
+   */
+  private final ExecutorService storeThread = Executors
+      .newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("WollMux Template Cache").setDaemon(true).build());
+
+  private ExpandedTemplateCache(File dir, int maxEntries)
+  {
+    this.dir = dir;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Liefert den Cache oder null, wenn er nicht eingeschaltet ist.
+   */
+  public static synchronized ExpandedTemplateCache getInstance()
+  {
+    if (!initialized)
+    {
+      initialized = true;
+      int size = (int) WollMuxFiles.getLongConfigValue(
+          WollMuxFiles.getWollmuxConf(), "TEMPLATE_CACHE_SIZE", 0);
+      File wollmuxDir = WollMuxFiles.getWollMuxDir();
+      if (size > 0 && wollmuxDir != null)
+      {
+        File dir = new File(wollmuxDir, DIRECTORY);
+        if (dir.isDirectory() || dir.mkdirs())
+          instance = new ExpandedTemplateCache(dir, size);
+        else
+          LOGGER.error(L.m("Das Verzeichnis %1 kann nicht angelegt werden.", dir));
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Öffnet die gespeicherte Expansion der Vorlage templateUrl als neues Dokument.
+   *
+   * @param templateUrl
+   *          Die von OOo aufbereitete URL der Vorlage.
+   * @param fragUrls
+   *          Die von OOo aufbereiteten URLs für insertContent.
+   * @param hidden
+   *          true, wenn das Dokument unsichtbar geöffnet werden soll.
+   * @return Das neue Dokument oder null, wenn keine aktuelle Expansion gespeichert
+   *         ist.
+   */
+  public XComponent load(String templateUrl, String[] fragUrls, boolean hidden)
+  {
+    String key = getKey(templateUrl, fragUrls);
+    File document = new File(dir, key + DOCUMENT_SUFFIX);
+    File manifest = new File(dir, key + MANIFEST_SUFFIX);
+    if (!document.isFile() || !manifest.isFile())
+      return null;
+
+    try (Reader in = new InputStreamReader(new FileInputStream(manifest),
+        StandardCharsets.UTF_8))
+    {
+      if (!isValid(new JsonParser().parse(in).getAsJsonObject(), templateUrl,
+          fragUrls))
+        return null;
+    } catch (IOException | RuntimeException e)
+    {
+      LOGGER.debug("", e);
+      return null;
+    }
+
+    try
+    {
+      String url = UNO.getParsedUNOUrl(document.toURI().toURL().toExternalForm()).Complete;
+      XComponent doc = UNO.loadComponentFromURL(url, true, true, hidden);
+      if (doc != null)
+      {
+        manifest.setLastModified(System.currentTimeMillis());
+        LOGGER.debug(L.m("Verwende gespeicherte Expansion der Vorlage '%1'.",
+            templateUrl));
+      }
+      return doc;
+    } catch (MalformedURLException | UnoHelperException e)
+    {
+      LOGGER.error("", e);
+      return null;
+    }
+  }
+
+  /**
+   * Merkt sich, dass das Dokument doc aus der Vorlage templateUrl erzeugt wurde und
+   * seine Expansion nach der Bearbeitung gespeichert werden soll.
+   */
+  public void expect(XTextDocument doc, String templateUrl, String[] fragUrls)
+  {
+    pending.put(new HashableComponent(doc), new Entry(templateUrl, fragUrls));
+  }
+
+  /**
+   * Liefert den Eintrag, in dem bei der Expansion des Dokuments doc die
+   * verwendeten Textfragmente gesammelt werden, oder null, wenn die Expansion von
+   * doc nicht gespeichert werden soll. Der Eintrag wird nur einmal geliefert.
+   */
+  public Entry startRecording(XTextDocument doc)
+  {
+    return pending.remove(new HashableComponent(doc));
+  }
+
+  /**
+   * Speichert das Dokument doc als Expansion des Eintrags entry. Das Dokument wird
+   * sofort in eine temporäre Datei geschrieben, da es anschließend weiter
+   * bearbeitet wird. Das Manifest wird im Hintergrund erzeugt, erst dann wird der
+   * Eintrag verwendbar.
+   */
+  public void store(XTextDocument doc, Entry entry)
+  {
+    File tmp = null;
+    try
+    {
+      tmp = File.createTempFile("store", DOCUMENT_SUFFIX, dir);
+      String url = UNO.getParsedUNOUrl(tmp.toURI().toURL().toExternalForm()).Complete;
+      UnoProps arguments = new UnoProps();
+      arguments.setPropertyValue("Overwrite", Boolean.TRUE);
+      arguments.setPropertyValue("FilterName", "writer8");
+      UNO.XStorable(doc).storeToURL(url, arguments.getProps());
+    } catch (java.lang.Exception e)
+    {
+      LOGGER.error(L.m("Die Expansion der Vorlage '%1' kann nicht gespeichert werden.",
+          entry.templateUrl), e);
+      if (tmp != null && !tmp.delete())
+        LOGGER.trace(L.m("%1 kann nicht gelöscht werden.", tmp));
+      return;
+    }
+    File stored = tmp;
+    storeThread.execute(() -> storeManifest(stored, entry));
+  }
+
+  /**
+   * Übernimmt das in tmp gespeicherte Dokument als Expansion des Eintrags entry
+   * und schreibt dessen Manifest.
+   */
+  private synchronized void storeManifest(File tmp, Entry entry)
+  {
+    String key = getKey(entry.templateUrl, entry.fragUrls);
+    File document = new File(dir, key + DOCUMENT_SUFFIX);
+    File manifest = new File(dir, key + MANIFEST_SUFFIX);
+    try
+    {
+      JsonObject json = entry.toJson();
+      // Ohne Manifest wird der Eintrag beim Austausch des Dokuments nicht
+      // verwendet.
+      Files.deleteIfExists(manifest.toPath());
+      Files.move(tmp.toPath(), document.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+      try (Writer out = new OutputStreamWriter(new FileOutputStream(manifest),
+          StandardCharsets.UTF_8))
+      {
+        out.write(json.toString());
+      }
+    } catch (IOException | RuntimeException e)
+    {
+      LOGGER.error(L.m("Die Expansion der Vorlage '%1' kann nicht gespeichert werden.",
+          entry.templateUrl), e);
+      if (manifest.exists() && !manifest.delete())
+        LOGGER.trace(L.m("%1 kann nicht gelöscht werden.", manifest));
+      if (tmp.exists() && !tmp.delete())
+        LOGGER.trace(L.m("%1 kann nicht gelöscht werden.", tmp));
+      return;
+    }
+    evict();
+  }
+
+  private boolean isValid(JsonObject manifest, String templateUrl,
+      String[] fragUrls) throws IOException
+  {
+    if (!templateUrl.equals(manifest.get("template").getAsString()))
+      return false;
+    JsonArray contents = manifest.getAsJsonArray("contents");
+    if (contents.size() != fragUrls.length)
+      return false;
+
+    // Zuerst ohne Download prüfen, ob die FRAG_IDs noch auf dieselben URLs
+    // verweisen, und dabei die benötigten Dokumente sammeln.
+    List<String> paths = new ArrayList<>();
+    paths.add(templateUrl);
+    paths.addAll(Arrays.asList(fragUrls));
+    List<JsonObject> fragments = new ArrayList<>();
+    for (JsonElement element : manifest.getAsJsonArray("fragments"))
+    {
+      JsonObject fragment = element.getAsJsonObject();
+      List<String> urls;
+      try
+      {
+        urls = TextFragmentIndex.getURLsByID(fragment.get("id").getAsString());
+      } catch (InvalidIdentifierException e)
+      {
+        return false;
+      }
+      JsonArray recordedUrls = fragment.getAsJsonArray("urls");
+      if (urls.size() != recordedUrls.size())
+        return false;
+      for (int i = 0; i < urls.size(); i++)
+      {
+        if (!urls.get(i).equals(recordedUrls.get(i).getAsString()))
+          return false;
+      }
+      int used = fragment.get("used").getAsInt();
+      for (int i = 0; i <= used; i++)
+        paths.add(Entry.toPath(urls.get(i)));
+      fragments.add(fragment);
+    }
+
+    // Alle Dokumente parallel laden, die folgenden Prüfungen verwenden nur noch
+    // den Cache des DocumentLoaders.
+    DocumentLoader loader = DocumentLoader.getInstance();
+    loader.prefetch(paths);
+
+    if (!hash(templateUrl).equals(manifest.get("hash").getAsString()))
+      return false;
+    for (int i = 0; i < fragUrls.length; i++)
+    {
+      if (!hash(fragUrls[i]).equals(contents.get(i).getAsString()))
+        return false;
+    }
+
+    for (JsonObject fragment : fragments)
+    {
+      JsonArray urls = fragment.getAsJsonArray("urls");
+      // Die URLs vor der verwendeten dürfen weiterhin nicht funktionieren.
+      int used = fragment.get("used").getAsInt();
+      for (int i = 0; i < used; i++)
+      {
+        try
+        {
+          loader.checkAvailable(Entry.toPath(urls.get(i).getAsString()));
+          return false;
+        } catch (IOException e)
+        {
+          // erwartet
+        }
+      }
+      if (!hash(Entry.toPath(urls.get(used).getAsString()))
+          .equals(fragment.get("hash").getAsString()))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Löscht die am längsten nicht verwendeten Einträge, bis höchstens
+   * {@link #maxEntries} übrig sind.
+   */
+  private void evict()
+  {
+    File[] manifests = dir.listFiles((d, name) -> name.endsWith(MANIFEST_SUFFIX));
+    if (manifests == null || manifests.length <= maxEntries)
+      return;
+
+    Arrays.sort(manifests, Comparator.comparingLong(File::lastModified));
+    for (int i = 0; i < manifests.length - maxEntries; i++)
+    {
+      String name = manifests[i].getName();
+      File document = new File(dir,
+          name.substring(0, name.length() - MANIFEST_SUFFIX.length())
+              + DOCUMENT_SUFFIX);
+      if (!manifests[i].delete() || !document.delete())
+        LOGGER.debug(L.m("%1 kann nicht gelöscht werden.", document));
+    }
+  }
+
+  private static String getKey(String templateUrl, String[] fragUrls)
+  {
+    StringBuilder key = new StringBuilder(templateUrl);
+    for (String url : fragUrls)
+      key.append('\n').append(url);
+    return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+  }
+
+  private static String hash(String path) throws IOException
+  {
+    return DocumentLoader.getInstance().getContentHash(path);
+  }
+
+  /**
+   * Sammelt während der Expansion einer Vorlage die eingefügten Textfragmente.
+   */
+  public static class Entry
+  {
+    private final String templateUrl;
+
+    private final String[] fragUrls;
+
+    private final List<JsonObject> fragments = new ArrayList<>();
+
+    private Entry(String templateUrl, String[] fragUrls)
+    {
+      this.templateUrl = templateUrl;
+      this.fragUrls = fragUrls.clone();
+    }
+
+    /**
+     * Vermerkt, dass für das Textfragment fragId die URL urls.get(used) verwendet
+     * wurde, nachdem die vorherigen URLs nicht funktioniert haben.
+     */
+    public void addFragment(String fragId, List<String> urls, int used)
+    {
+      JsonObject fragment = new JsonObject();
+      fragment.addProperty("id", fragId);
+      JsonArray array = new JsonArray();
+      for (String url : urls)
+        array.add(url);
+      fragment.add("urls", array);
+      fragment.addProperty("used", used);
+      fragments.add(fragment);
+    }
+
+    private JsonObject toJson() throws IOException
+    {
+      JsonObject json = new JsonObject();
+      json.addProperty("template", templateUrl);
+      json.addProperty("hash", hash(templateUrl));
+      JsonArray contents = new JsonArray();
+      for (String url : fragUrls)
+        contents.add(hash(url));
+      json.add("contents", contents);
+      JsonArray array = new JsonArray();
+      for (JsonObject fragment : fragments)
+      {
+        String url = fragment.getAsJsonArray("urls")
+            .get(fragment.get("used").getAsInt()).getAsString();
+        fragment.addProperty("hash", hash(toPath(url)));
+        array.add(fragment);
+      }
+      json.add("fragments", array);
+      return json;
+    }
+
+    /**
+     * Liefert die URL urlStr aus der wollmux.conf in der Form, in der sie an den
+     * {@link DocumentLoader} übergeben wird.
+     */
+    private static String toPath(String urlStr) throws IOException
+    {
+      String path = UNO
+          .getParsedUNOUrl(WollMuxFiles.makeURL(urlStr).toExternalForm()).Complete;
+      if (path == null)
+        throw new IOException(L.m("Die URL '%1' ist ungültig.", urlStr));
+      return path;
+    }
+  }
+}
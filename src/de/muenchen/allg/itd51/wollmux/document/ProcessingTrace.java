@@ -0,0 +1,177 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.muenchen.allg.itd51.wollmux.core.document.commands.DocumentCommand;
+
+/**
+ * Misst, wie lange die einzelnen Schritte der Bearbeitung eines Dokuments (z.B.
+ * durch OnProcessTextDocument) dauern. Pro Schritt werden die Dauer, die Anzahl
+ * der eingefügten Textfragmente und die Anzahl der Dokumentkommandos nach dem
+ * Schritt erfasst. Am Ende wird eine Zeile ins Log geschrieben. Die letzten
+ * {@link #KEEP_TRACES} Messungen sind über
+ * {@link de.muenchen.allg.itd51.wollmux.WollMuxFiles#dumpInfo()} abrufbar.
+ */
+public class ProcessingTrace
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(ProcessingTrace.class);
+
+  /**
+   * Anzahl der Messungen, die für dumpInfo gemerkt werden.
+   */
+  private static final int KEEP_TRACES = 20;
+
+  private static final Deque<String> lastTraces = new ArrayDeque<>();
+
+  private final TextDocumentController documentController;
+
+  /**
+   * Der Titel des Dokuments, der bereits beim Start abgefragt wird, damit
+   * {@link #finish()} keine UNO-Aufrufe mehr benötigt.
+   */
+  private final String title;
+
+  private final long time = System.currentTimeMillis();
+
+  private final long start = System.nanoTime();
+
+  private final List<Stage> stages = new ArrayList<>();
+
+  private Stage current;
+
+  public ProcessingTrace(TextDocumentController documentController)
+  {
+    this.documentController = documentController;
+    this.title = documentController.getFrameController().getTitle();
+  }
+
+  /**
+   * Beendet den aktuellen Schritt und beginnt den Schritt name.
+   */
+  public void stage(String name)
+  {
+    endStage();
+    current = new Stage(name);
+  }
+
+  /**
+   * Zählt ein im aktuellen Schritt eingefügtes Textfragment.
+   */
+  public void countFragment()
+  {
+    if (current != null)
+      current.fragments++;
+  }
+
+  /**
+   * Beendet die Messung, schreibt sie ins Log und merkt sie für dumpInfo. Da die
+   * Methode in einem finally-Block aufgerufen wird, wirft sie keine Exception, die
+   * einen Fehler der eigentlichen Bearbeitung verdecken könnte.
+   */
+  public void finish()
+  {
+    try
+    {
+      log();
+    } catch (RuntimeException e)
+    {
+      LOGGER.debug("", e);
+    }
+  }
+
+  private void log()
+  {
+    endStage();
+    StringBuilder buffy = new StringBuilder();
+    buffy.append(title).append(": ")
+        .append(toMillis(System.nanoTime() - start)).append("ms [");
+    for (Iterator<Stage> iter = stages.iterator(); iter.hasNext();)
+    {
+      buffy.append(iter.next());
+      if (iter.hasNext())
+        buffy.append(", ");
+    }
+    buffy.append("]");
+    String trace = buffy.toString();
+
+    LOGGER.info("Dokumentbearbeitung " + trace);
+    synchronized (lastTraces)
+    {
+      lastTraces.addFirst(new Date(time) + " " + trace);
+      if (lastTraces.size() > KEEP_TRACES)
+        lastTraces.removeLast();
+    }
+  }
+
+  /**
+   * Liefert die letzten Messungen, die neueste zuerst.
+   */
+  public static String getReport()
+  {
+    StringBuilder report = new StringBuilder();
+    synchronized (lastTraces)
+    {
+      for (String trace : lastTraces)
+        report.append(trace).append("\n");
+    }
+    return report.toString();
+  }
+
+  private void endStage()
+  {
+    if (current == null)
+      return;
+    current.nanos = System.nanoTime() - current.start;
+    int commands = 0;
+    for (Iterator<DocumentCommand> iter = documentController.getModel()
+        .getDocumentCommands().iterator(); iter.hasNext(); iter.next())
+      commands++;
+    current.commands = commands;
+    stages.add(current);
+    current = null;
+  }
+
+  private static long toMillis(long nanos)
+  {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static class Stage
+  {
+    private final String name;
+
+    private final long start = System.nanoTime();
+
+    private long nanos;
+
+    private int fragments;
+
+    private int commands;
+
+    Stage(String name)
+    {
+      this.name = name;
+    }
+
+    @Override
+    public String toString()
+    {
+      StringBuilder buffy = new StringBuilder(name);
+      buffy.append(" ").append(toMillis(nanos)).append("ms");
+      if (fragments > 0)
+        buffy.append(" frags=").append(fragments);
+      buffy.append(" cmds=").append(commands);
+      return buffy.toString();
+    }
+  }
+}
@@ -0,0 +1,430 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.star.text.XTextDocument;
+
+import de.muenchen.allg.itd51.wollmux.HashableComponent;
+import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
+import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
+import de.muenchen.allg.itd51.wollmux.core.util.L;
+
+/**
+ * Hält für die am häufigsten geöffneten Vorlagen je ein unsichtbares, bereits
+ * vollständig bearbeitetes Dokument bereit, das beim Öffnen der Vorlage sofort
+ * angezeigt werden kann. Wie oft welche Vorlage geöffnet wird, wird in der Datei
+ * templatepool.properties im WollMux-Verzeichnis gezählt. Die Datei wird
+ * höchstens alle {@link #USAGE_SAVE_DELAY} Sekunden geschrieben.
+ *
+ * Der Pool ist nur aktiv, wenn in der wollmux.conf TEMPLATE_POOL_SIZE auf die
+ * Anzahl der vorzuhaltenden Vorlagen gesetzt ist. TEMPLATE_POOL_MEMORY begrenzt
+ * die Summe der Dateigrößen der vorgehaltenen Vorlagen in Megabyte (Standard 32).
+ * Formulare werden nicht vorgehalten, da ihre Formular-GUI erst beim Anzeigen
+ * gestartet werden darf. Bei einer Änderung der Absenderdaten und nach
+ * {@link #MAX_AGE_MINUTES} Minuten werden die Dokumente verworfen und neu erzeugt.
+ *
+ * Befüllt wird der Pool über das Hintergrund-Event OnFillTemplatePool, das
+ * jeweils ein Dokument unsichtbar öffnet. Die Bearbeitung durch OnProcessTextDocument meldet
+ * das Dokument mit {@link #ready(TextDocumentController)} als bereit. Da die
+ * Bearbeitung beginnen kann, bevor das Öffnen zurückkehrt, wird die Bearbeitung
+ * unsichtbarer Dokumente während des Öffnens zurückgestellt (siehe
+ * {@link #deferProcessing(TextDocumentController)}).
+ */
+public class TemplateWarmPool
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(TemplateWarmPool.class);
+
+  private static final String USAGE_FILE = "templatepool.properties";
+
+  /**
+   * Maximales Alter eines vorgehaltenen Dokuments in Minuten.
+   */
+  private static final long MAX_AGE_MINUTES = 60;
+
+  /**
+   * Verzögerung in Sekunden, mit der die Änderungen der Nutzungszahlen gesammelt
+   * in die Datei geschrieben werden.
+   */
+  private static final long USAGE_SAVE_DELAY = 10;
+
+  private static TemplateWarmPool instance;
+
+  private static boolean initialized = false;
+
+  private final int size;
+
+  private final long maxBytes;
+
+  private final File usageFile;
+
+  /**
+   * Wie oft die Vorlagen geöffnet wurden. Der Schlüssel sind die mit ','
+   * verbundenen FRAG_IDs.
+   */
+  private final Properties usage = new Properties();
+
+  /**
+   * Schreibt die Nutzungszahlen, damit das Öffnen einer Vorlage nicht auf die
+   * Datei warten muss.
+   */
+  private final ScheduledExecutorService usageWriter = Executors
+      .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("WollMux Template Pool Usage").setDaemon(true).build());
+
+  /**
+   * true, wenn das Schreiben der Nutzungszahlen bereits geplant ist.
+   */
+  private boolean usageSaveScheduled = false;
+
+  /**
+   * Die vorgehaltenen und die gerade geladenen Dokumente.
+   */
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  /**
+   * Vorlagen, die nicht vorgehalten werden können (z.B. Formulare).
+   */
+  private final Set<String> unpoolable = new HashSet<>();
+
+  /**
+   * true, während OnFillTemplatePool ein Dokument öffnet.
+   */
+  private boolean opening = false;
+
+  /**
+   * Unsichtbare Dokumente, deren Bearbeitung während des Öffnens begonnen hat.
+   */
+  private final List<TextDocumentController> deferred = new ArrayList<>();
+
+  private TemplateWarmPool(int size, long maxBytes, File usageFile)
+  {
+    this.size = size;
+    this.maxBytes = maxBytes;
+    this.usageFile = usageFile;
+    if (usageFile.isFile())
+    {
+      try (InputStream in = new FileInputStream(usageFile))
+      {
+        usage.load(in);
+      } catch (IOException e)
+      {
+        LOGGER.error("", e);
+      }
+    }
+  }
+
+  /**
+   * Liefert den Pool oder null, wenn er nicht eingeschaltet ist.
+   */
+  public static synchronized TemplateWarmPool getInstance()
+  {
+    if (!initialized)
+    {
+      initialized = true;
+      ConfigThingy conf = WollMuxFiles.getWollmuxConf();
+      int size = (int) WollMuxFiles.getLongConfigValue(conf,
+          "TEMPLATE_POOL_SIZE", 0);
+      File wollmuxDir = WollMuxFiles.getWollMuxDir();
+      if (size > 0 && wollmuxDir != null)
+        instance = new TemplateWarmPool(size,
+            WollMuxFiles.getLongConfigValue(conf, "TEMPLATE_POOL_MEMORY", 32)
+                * 1024 * 1024,
+            new File(wollmuxDir, USAGE_FILE));
+    }
+    return instance;
+  }
+
+  /**
+   * Zählt, dass die Vorlage fragIDs geöffnet wurde. Die Datei wird verzögert
+   * geschrieben.
+   */
+  public synchronized void recordUsage(List<String> fragIDs)
+  {
+    String key = getKey(fragIDs);
+    long count = Long.parseLong(usage.getProperty(key, "0")) + 1;
+    usage.setProperty(key, String.valueOf(count));
+    if (!usageSaveScheduled)
+    {
+      usageSaveScheduled = true;
+      usageWriter.schedule(this::saveUsage, USAGE_SAVE_DELAY, TimeUnit.SECONDS);
+    }
+  }
+
+  private void saveUsage()
+  {
+    Properties snapshot = new Properties();
+    synchronized (this)
+    {
+      usageSaveScheduled = false;
+      snapshot.putAll(usage);
+    }
+    try (OutputStream out = new FileOutputStream(usageFile))
+    {
+      snapshot.store(out, null);
+    } catch (IOException e)
+    {
+      LOGGER.error(L.m("Die Datei %1 kann nicht geschrieben werden.", usageFile),
+          e);
+    }
+  }
+
+  /**
+   * Entnimmt das vorgehaltene Dokument der Vorlage fragIDs.
+   *
+   * @return Das unsichtbare, fertig bearbeitete Dokument oder null, wenn für
+   *         fragIDs keines bereit ist.
+   */
+  public synchronized TextDocumentController take(List<String> fragIDs)
+  {
+    String key = getKey(fragIDs);
+    Entry entry = entries.get(key);
+    if (entry == null || entry.readyTime == 0)
+      return null;
+
+    entries.remove(key);
+    if (System.currentTimeMillis() - entry.readyTime > TimeUnit.MINUTES
+        .toMillis(MAX_AGE_MINUTES))
+    {
+      close(entry);
+      return null;
+    }
+    LOGGER.debug(L.m("Verwende vorgehaltenes Dokument für %1.", key));
+    return entry.documentController;
+  }
+
+  /**
+   * Liefert die FRAG_IDs der am häufigsten geöffneten Vorlage, für die noch kein
+   * Dokument vorgehalten wird, oder null, wenn der Pool voll ist.
+   */
+  public synchronized List<String> nextToLoad()
+  {
+    List<String> keys = new ArrayList<>(usage.stringPropertyNames());
+    keys.sort((a, b) -> Long.compare(Long.parseLong(usage.getProperty(b)),
+        Long.parseLong(usage.getProperty(a))));
+    for (String key : keys.subList(0, Math.min(size, keys.size())))
+    {
+      if (!entries.containsKey(key) && !unpoolable.contains(key))
+        return Arrays.asList(key.split(","));
+    }
+    return null;
+  }
+
+  /**
+   * Reserviert den Platz für die Vorlage fragIDs, deren Datei length Bytes groß
+   * ist.
+   *
+   * @return false, wenn die Vorlage nicht mehr in den Pool passt.
+   */
+  public synchronized boolean reserve(List<String> fragIDs, long length)
+  {
+    long used = 0;
+    for (Entry entry : entries.values())
+      used += entry.length;
+    if (used + length > maxBytes)
+      return false;
+    entries.put(getKey(fragIDs), new Entry(length));
+    return true;
+  }
+
+  /**
+   * Vermerkt, dass OnFillTemplatePool mit dem Öffnen eines Dokuments beginnt. Muss
+   * vor dem Öffnen aufgerufen werden, damit OnProcessTextDocument das Dokument
+   * nicht als normales Dokument bearbeitet.
+   */
+  public synchronized void startOpening()
+  {
+    opening = true;
+  }
+
+  /**
+   * Vermerkt, dass das Öffnen beendet ist. Zuvor muss das geöffnete Dokument mit
+   * {@link #loading(List, TextDocumentController)} bzw. der Fehler mit
+   * {@link #failed(List)} gemeldet werden.
+   *
+   * @return Die Dokumente, deren Bearbeitung zurückgestellt wurde und die nun
+   *         erneut bearbeitet werden müssen.
+   */
+  public synchronized List<TextDocumentController> finishOpening()
+  {
+    opening = false;
+    List<TextDocumentController> result = new ArrayList<>(deferred);
+    deferred.clear();
+    return result;
+  }
+
+  /**
+   * Stellt die Bearbeitung des unsichtbaren Dokuments documentController zurück,
+   * wenn gerade ein Dokument für den Pool geöffnet wird und noch nicht feststeht,
+   * ob es sich um dieses handelt. Die Bearbeitung muss dann nach
+   * {@link #finishOpening()} erneut angestoßen werden.
+   *
+   * @return true, wenn die Bearbeitung zurückgestellt wurde.
+   */
+  public synchronized boolean deferProcessing(
+      TextDocumentController documentController)
+  {
+    if (!opening || getLoadingKey(documentController.getModel().doc) != null)
+      return false;
+    deferred.add(documentController);
+    return true;
+  }
+
+  /**
+   * Vermerkt, dass das Dokument der Vorlage fragIDs unsichtbar geöffnet wurde und
+   * nun bearbeitet wird.
+   */
+  public synchronized void loading(List<String> fragIDs,
+      TextDocumentController documentController)
+  {
+    Entry entry = entries.get(getKey(fragIDs));
+    if (entry != null)
+      entry.documentController = documentController;
+  }
+
+  /**
+   * Vermerkt, dass die Vorlage fragIDs nicht vorgehalten werden kann.
+   */
+  public synchronized void failed(List<String> fragIDs)
+  {
+    String key = getKey(fragIDs);
+    Entry entry = entries.remove(key);
+    if (entry != null)
+      close(entry);
+    unpoolable.add(key);
+  }
+
+  /**
+   * Liefert true, wenn doc für den Pool geöffnet wurde und noch bearbeitet wird.
+   */
+  public synchronized boolean isLoading(XTextDocument doc)
+  {
+    return getLoadingKey(doc) != null;
+  }
+
+  /**
+   * Meldet, dass die Bearbeitung des Dokuments abgeschlossen ist. Formulare werden
+   * geschlossen und nicht mehr vorgehalten.
+   */
+  public synchronized void ready(TextDocumentController documentController)
+  {
+    String key = getLoadingKey(documentController.getModel().doc);
+    if (key == null)
+      return;
+    Entry entry = entries.get(key);
+    if (entry.discarded)
+    {
+      entries.remove(key);
+      close(entry);
+    } else if (documentController.getModel().isFormDocument())
+    {
+      failed(Arrays.asList(key.split(",")));
+    } else
+    {
+      entry.readyTime = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Meldet, dass die Bearbeitung des Dokuments fehlgeschlagen ist. Das Dokument
+   * wird geschlossen und die Vorlage nicht mehr vorgehalten.
+   */
+  public synchronized void discard(TextDocumentController documentController)
+  {
+    String key = getLoadingKey(documentController.getModel().doc);
+    if (key != null)
+      failed(Arrays.asList(key.split(",")));
+  }
+
+  /**
+   * Verwirft alle vorgehaltenen Dokumente, z.B. weil sich die Absenderdaten
+   * geändert haben. Dokumente, die noch bearbeitet werden, werden danach
+   * verworfen.
+   */
+  public synchronized void clear()
+  {
+    for (Entry entry : entries.values())
+    {
+      if (entry.readyTime != 0)
+        close(entry);
+      else
+        entry.discarded = true;
+    }
+    entries.values().removeIf(entry -> entry.readyTime != 0);
+  }
+
+  private String getLoadingKey(XTextDocument doc)
+  {
+    if (doc == null)
+      return null;
+    HashableComponent component = new HashableComponent(doc);
+    for (Map.Entry<String, Entry> e : entries.entrySet())
+    {
+      Entry entry = e.getValue();
+      if (entry.readyTime == 0 && entry.documentController != null
+          && component.equals(new HashableComponent(entry.documentController.getModel().doc)))
+        return e.getKey();
+    }
+    return null;
+  }
+
+  private static void close(Entry entry)
+  {
+    if (entry.documentController == null)
+      return;
+    try
+    {
+      entry.documentController.getModel().close();
+    } catch (java.lang.Exception e)
+    {
+      LOGGER.debug("", e);
+    }
+  }
+
+  private static String getKey(List<String> fragIDs)
+  {
+    return String.join(",", fragIDs);
+  }
+
+  private static class Entry
+  {
+    private final long length;
+
+    private TextDocumentController documentController;
+
+    /**
+     * Zeitpunkt, zu dem die Bearbeitung abgeschlossen war, oder 0.
+     */
+    private long readyTime = 0;
+
+    /**
+     * Das Dokument wird nach der Bearbeitung verworfen.
+     */
+    private boolean discarded = false;
+
+    private Entry(long length)
+    {
+      this.length = length;
+    }
+  }
+}
@@ -2,9 +2,13 @@ package de.muenchen.allg.itd51.wollmux.document;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -12,10 +16,13 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sun.star.beans.XPropertySet;
 import com.sun.star.container.XEnumeration;
 import com.sun.star.container.XNameAccess;
 import com.sun.star.frame.XFrame;
+import com.sun.star.lang.EventObject;
 import com.sun.star.lang.XComponent;
 import com.sun.star.lang.XMultiServiceFactory;
 import com.sun.star.text.XBookmarksSupplier;
@@ -24,6 +31,9 @@ import com.sun.star.text.XTextContent;
 import com.sun.star.text.XTextCursor;
 import com.sun.star.text.XTextRange;
 import com.sun.star.uno.RuntimeException;
+import com.sun.star.uno.UnoRuntime;
+import com.sun.star.util.XModifyBroadcaster;
+import com.sun.star.util.XModifyListener;
 
 import de.muenchen.allg.afid.UNO;
 import de.muenchen.allg.itd51.wollmux.SachleitendeVerfuegung;
@@ -62,6 +72,7 @@ import de.muenchen.allg.itd51.wollmux.core.util.Utils;
 import de.muenchen.allg.itd51.wollmux.db.DatasourceJoinerFactory;
 import de.muenchen.allg.itd51.wollmux.dialog.DialogFactory;
 import de.muenchen.allg.itd51.wollmux.dialog.mailmerge.MailMergeDatasource;
+import de.muenchen.allg.itd51.wollmux.event.EventStatistics;
 import de.muenchen.allg.itd51.wollmux.event.WollMuxEventHandler;
 import de.muenchen.allg.itd51.wollmux.form.control.FormController;
 
@@ -102,6 +113,15 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
    */
   private SimulationResults simulationResult = null;
 
+  /**
+   * Die Inhalte der Formularfelder für {@link #startSimulation()} oder null. Sie
+   * werden beim ersten Start einer Simulation gelesen und für alle weiteren
+   * Simulationen desselben Seriendrucks wiederverwendet, da dabei keine
+   * Formularfelder geschrieben werden. Nach dem Seriendruck werden sie mit
+   * {@link #endSimulationSession()} verworfen.
+   */
+  private Map<FormField, String> simulationSnapshot;
+
   /**
    * Der Vorschaumodus ist standardmäßig immer gesetzt - ist dieser Modus nicht
    * gesetzt, so werden in den Formularfeldern des Dokuments nur die Feldnamen in
@@ -115,9 +135,61 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
 
   private FormModel formModel;
 
+  /**
+   * true, wenn Formularwerte geändert, aber noch nicht in die persistenten Daten
+   * geschrieben wurden.
+   */
+  private boolean formValuesDirty;
+
+  /**
+   * true, wenn bereits ein OnStoreFormFieldValues-Event für dieses Dokument
+   * erzeugt wurde, das noch nicht abgearbeitet ist.
+   */
+  private boolean storeFormValuesQueued;
+
+  /**
+   * Index der Sichtbarkeitselemente für {@link #setVisibleState(String, boolean)}
+   * oder null, wenn er (neu) aufgebaut werden muss.
+   */
+  private VisibilityIndex visibilityIndex;
+
+  /**
+   * Wird bei jeder Aktualisierung des Kommandobaums über
+   * {@link #updateDocumentCommands()} hochgezählt.
+   */
+  private long documentCommandsVersion;
+
+  /**
+   * Die gemerkten Ergebnisse der TRAFO-Funktionen dieses Dokuments.
+   */
+  private final TrafoResultCache trafoResults;
+
+  /**
+   * Die zuletzt in die Formularfelder geschriebenen Werte. Enthält ein Feld bereits
+   * den neuen Wert, wird es nicht noch einmal geschrieben. Wird das Dokument auf
+   * anderem Weg geändert (z.B. durch den Benutzer), werden die Werte verworfen
+   * (siehe {@link #registerFormFieldModifyListener()}).
+   */
+  private final Cache<FormField, String> writtenFormFieldValues = CacheBuilder
+      .newBuilder().weakKeys().build();
+
+  /**
+   * Ist true, solange {@link #writeFormField(FormField, String)} ein Formularfeld
+   * schreibt.
+   */
+  private volatile boolean writingFormField = false;
+
+  /**
+   * Ist null, solange noch kein Formularfeld geschrieben wurde. Ansonsten true,
+   * wenn Änderungen am Dokument erkannt werden und Schreibzugriffe daher
+   * übersprungen werden dürfen.
+   */
+  private Boolean formFieldModifyListenerRegistered = null;
+
   public TextDocumentController(TextDocumentModel model, FunctionLibrary globalFunctions, DialogLibrary globalDialogs)
   {
     this.model = model;
+    this.trafoResults = new TrafoResultCache(model);
     this.formFieldPreviewMode = true;
     this.globalFunctions = globalFunctions;
     this.globalDialogs = globalDialogs;
@@ -398,9 +470,17 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
     return false;
   }
 
-  public synchronized void updateDocumentCommands()
+  /**
+   * Aktualisiert den Kommandobaum des Dokuments.
+   *
+   * @return true, wenn sich der Kommandobaum geändert hat.
+   */
+  public synchronized boolean updateDocumentCommands()
   {
-    model.getDocumentCommands().update();
+    boolean changed = model.getDocumentCommands().update();
+    documentCommandsVersion++;
+    visibilityIndex = null;
+    return changed;
   }
 
   /**
@@ -415,6 +495,21 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
     updateFormFields(id);
   }
 
+  /**
+   * Übernimmt mehrere Formularwerte ins Model und ins Dokument. Felder, deren
+   * TRAFO-Funktion von mehreren der Werte abhängt, werden dabei nur einmal neu
+   * berechnet.
+   *
+   * @param values
+   *          Bildet die Namen der Formularfelder auf ihre Inhalte ab.
+   */
+  public synchronized void addFormFieldValues(Map<String, String> values)
+  {
+    for (Map.Entry<String, String> entry : values.entrySet())
+      setFormFieldValue(entry.getKey(), entry.getValue());
+    updateFormFields(values.keySet());
+  }
+
   /**
    * Führt alle Funktionen aus funcs der Reihe nach aus, solange bis eine davon einen
    * nicht-leeren String zurückliefert und interpretiert diesen als Angabe, welche
@@ -555,13 +650,14 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
               continue;
             }
 
-            String[] pars = func.parameters();
-            if (pars.length == 0) {
+            // Ein Parameter kann mehrfach vorkommen, das Feld muss aber je ID nur
+            // einmal aktualisiert werden.
+            Set<String> pars = new LinkedHashSet<>(Arrays.asList(func.parameters()));
+            if (pars.isEmpty()) {
               model.getStaticTextFieldFormFields().add(f);
             }
-            for (int i = 0; i < pars.length; i++)
+            for (String id : pars)
             {
-              String id = pars[i];
               if (id != null && id.length() > 0)
               {
                 if (!model.getIdToTextFieldFormFields().containsKey(id))
@@ -814,11 +910,14 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
       Function func = getFunctionLibrary().get(trafoName);
       if (func != null)
       {
-        SimpleMap args = new SimpleMap();
         String[] pars = func.parameters();
-        for (int i = 0; i < pars.length; i++)
-          args.put(pars[i], value);
-        transformed = func.getString(args);
+        transformed = trafoResults.get(trafoName,
+            Collections.nCopies(pars.length, value), () -> {
+              SimpleMap args = new SimpleMap();
+              for (int i = 0; i < pars.length; i++)
+                args.put(pars[i], value);
+              return func.getString(args);
+            });
       }
       else
       {
@@ -852,11 +951,16 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
     Function func = getFunctionLibrary().get(trafoName);
     if (func != null)
     {
-      SimpleMap args = new SimpleMap();
       String[] pars = func.parameters();
+      List<String> values = new ArrayList<>(pars.length);
       for (int i = 0; i < pars.length; i++)
-        args.put(pars[i], mapIdToValues.get(pars[i]));
-      return func.getString(args);
+        values.add(mapIdToValues.get(pars[i]));
+      return trafoResults.get(trafoName, values, () -> {
+        SimpleMap args = new SimpleMap();
+        for (int i = 0; i < pars.length; i++)
+          args.put(pars[i], values.get(i));
+        return func.getString(args);
+      });
     }
     else
     {
@@ -911,6 +1015,10 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
       }
     }
 
+    // Ein noch wartendes OnStoreFormFieldValues darf die Formularwerte nicht
+    // wieder schreiben.
+    formValuesDirty = false;
+    storeFormValuesQueued = false;
     model.getPersistentData().removeData(DataID.FORMULARBESCHREIBUNG);
     model.getPersistentData().removeData(DataID.FORMULARWERTE);
   }
@@ -1053,6 +1161,7 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
    */
   public synchronized void flushPersistentData()
   {
+    storeFormFieldValues();
     model.getPersistentData().flush();
   }
 
@@ -1381,29 +1490,77 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
    * Formularelemente nur simuliert und es der Modified-Status des Dokuments wird
    * nicht gesetzt.
    *
+   * Im Vorschaumodus werden außerdem die Felder neu berechnet, deren
+   * TRAFO-Funktion keine Parameter hat, aber nicht nur von diesen abhängt (siehe
+   * {@link #updateImpureStaticFormFields()}).
+   *
    * @param fieldId
    *          Die ID des Formularfeldes bzw. der Formularfelder, die im Dokument
    *          angepasst werden sollen.
    */
   public synchronized void updateFormFields(String fieldId)
   {
+    updateFormFields(Collections.singletonList(fieldId));
+  }
+
+  /**
+   * Wie {@link #updateFormFields(String)} für mehrere IDs. Im Vorschaumodus wird
+   * jedes Feld mit TRAFO-Funktion nur einmal neu berechnet, auch wenn es von
+   * mehreren der IDs abhängt.
+   */
+  public synchronized void updateFormFields(Collection<String> fieldIds)
+  {
+    updateDependentFormFields(fieldIds);
     if (formFieldPreviewMode)
+      updateImpureStaticFormFields();
+    if (simulationResult == null) {
+      model.setDocumentModified(true);
+    }
+  }
+
+  /**
+   * Aktualisiert die Formularfelder mit den IDs fieldIds und die Felder, deren
+   * TRAFO-Funktion eine dieser IDs als Parameter erwartet.
+   */
+  private void updateDependentFormFields(Collection<String> fieldIds)
+  {
+    if (!formFieldPreviewMode)
     {
-      String value = model.getFormFieldValuesMap().get(fieldId);
-      if (simulationResult != null)
-        value = simulationResult.getFormFieldValues().get(fieldId);
-      if (value == null) {
-        value = "";
-      }
-      setFormFields(fieldId, value, true);
+      for (String fieldId : fieldIds)
+        setFormFields(fieldId, "<" + fieldId + ">", false);
+      return;
     }
-    else
+
+    Set<FormField> updated = new HashSet<>();
+    for (String fieldId : fieldIds)
     {
-      setFormFields(fieldId, "<" + fieldId + ">", false);
+      String value = getPreviewValue(fieldId);
+      setFormFields(model.getIdToFormFields().get(fieldId), value, true, false);
+      List<FormField> textFields = model.getIdToTextFieldFormFields().get(fieldId);
+      if (textFields != null)
+      {
+        // Felder ohne TRAFO zeigen den Wert ihrer ID und werden immer gesetzt.
+        List<FormField> pending = new ArrayList<>();
+        for (FormField field : textFields)
+          if (field.getTrafoName() == null || updated.add(field))
+            pending.add(field);
+        setFormFields(pending, value, true, true);
+      }
     }
-    if (simulationResult == null) {
-      model.setDocumentModified(true);
+  }
+
+  /**
+   * Liefert den im Vorschaumodus anzuzeigenden Wert des Formularfeldes fieldId.
+   */
+  private String getPreviewValue(String fieldId)
+  {
+    String value = model.getFormFieldValuesMap().get(fieldId);
+    if (simulationResult != null)
+      value = simulationResult.getFormFieldValues().get(fieldId);
+    if (value == null) {
+      value = "";
     }
+    return value;
   }
 
   /**
@@ -1424,26 +1581,19 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
 
       groupState.put(groupId, visible);
 
+      Collection<VisibilityElement> elements = model.getDocumentCommands().getSetGroups();
+      if (visibilityIndex == null
+          || !visibilityIndex.isValidFor(documentCommandsVersion, groupState))
+        visibilityIndex = new VisibilityIndex(elements, documentCommandsVersion,
+            groupState);
+
       VisibilityElement firstChangedElement = null;
 
-      // Sichtbarkeitselemente durchlaufen und alle ggf. updaten:
-      Iterator<VisibilityElement> iter = model.getDocumentCommands().getSetGroups().iterator();
-      while (iter.hasNext())
+      // Nur die Sichtbarkeitselemente der Gruppe groupId updaten:
+      for (VisibilityElement visibleElement : visibilityIndex.setVisible(groupId, visible))
       {
-        VisibilityElement visibleElement = iter.next();
-        Set<String> groups = visibleElement.getGroups();
-        if (!groups.contains(groupId)) {
-          continue;
-        }
-
         // Visibility-Status neu bestimmen:
-        boolean setVisible = true;
-        for (String gid : groups)
-        {
-          if (groupState.get(gid).equals(Boolean.FALSE)) {
-            setVisible = false;
-          }
-        }
+        boolean setVisible = visibilityIndex.isVisible(visibleElement);
 
         // Element merken, dessen Sichtbarkeitsstatus sich zuerst ändert und
         // den focus (ViewCursor) auf den Start des Bereichs setzen. Da das
@@ -1492,14 +1642,47 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
    */
   private void updateAllFormFields()
   {
-    for (String fieldId : model.getAllFieldIDs())
-    {
-      updateFormFields(fieldId);
+    updateDependentFormFields(model.getAllFieldIDs());
+    updateStaticFormFields();
+    if (simulationResult == null) {
+      model.setDocumentModified(true);
     }
   }
 
   /**
-   * Setzt den Inhalt aller Formularfelder mit ID fieldId auf value.
+   * Aktualisiert die Formularfelder, deren TRAFO-Funktion keine Parameter erwartet.
+   * Sie hängen von keinem Formularwert ab und werden daher nicht bei jeder Änderung
+   * eines Formularwerts, sondern nur von {@link #updateAllFormFields()} neu
+   * berechnet.
+   */
+  private void updateStaticFormFields()
+  {
+    setFormFields(model.getStaticTextFieldFormFields(), "", true, true);
+  }
+
+  /**
+   * Aktualisiert die Formularfelder ohne Parameter, deren TRAFO-Funktion z.B. über
+   * EXTERN oder DIALOG von anderen Daten abhängt (siehe
+   * {@link TrafoResultCache#isPure(String)}). Sie können sich mit jeder Änderung
+   * eines Formularwerts ändern, etwa nach dem Schließen eines Funktionsdialogs
+   * oder beim Seriendruck.
+   */
+  private void updateImpureStaticFormFields()
+  {
+    List<FormField> impure = new ArrayList<>();
+    for (FormField field : model.getStaticTextFieldFormFields())
+      if (field.getTrafoName() != null && !trafoResults.isPure(field.getTrafoName()))
+        impure.add(field);
+    if (!impure.isEmpty())
+      setFormFields(impure, "", true, true);
+  }
+
+  /**
+   * Setzt den Inhalt aller Formularfelder mit ID fieldId auf value. Neu berechnet
+   * werden nur die Felder, deren TRAFO-Funktion fieldId als Parameter erwartet
+   * (siehe {@link #collectNonWollMuxFormFields()}). Da die TRAFO-Funktionen nur
+   * Formularwerte und keine Inhalte anderer Felder lesen, spielt die Reihenfolge
+   * keine Rolle.
    *
    * @param applyTrafo
    *          gibt an, ob eine evtl. vorhandene TRAFO-Funktion angewendet werden soll
@@ -1510,7 +1693,6 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
   {
     setFormFields(model.getIdToFormFields().get(fieldId), value, applyTrafo, false);
     setFormFields(model.getIdToTextFieldFormFields().get(fieldId), value, applyTrafo, true);
-    setFormFields(model.getStaticTextFieldFormFields(), value, applyTrafo, true);
   }
 
   /**
@@ -1556,7 +1738,7 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
           result = value;
 
         if (simulationResult == null)
-          field.setValue(result);
+          writeFormField(field, result);
         else
           simulationResult.setFormFieldContent(field, result);
       }
@@ -1566,6 +1748,70 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
       }
   }
 
+  /**
+   * Schreibt value in das Formularfeld field, falls nicht zuletzt bereits dieser
+   * Wert geschrieben wurde.
+   */
+  private void writeFormField(FormField field, String value)
+  {
+    if (registerFormFieldModifyListener() && value != null
+        && value.equals(writtenFormFieldValues.getIfPresent(field)))
+    {
+      EventStatistics.getInstance().formFieldWritten(true);
+      return;
+    }
+
+    writtenFormFieldValues.invalidate(field);
+    writingFormField = true;
+    try
+    {
+      field.setValue(value);
+    }
+    finally
+    {
+      writingFormField = false;
+    }
+    EventStatistics.getInstance().formFieldWritten(false);
+    if (value != null)
+      writtenFormFieldValues.put(field, value);
+  }
+
+  /**
+   * Registriert beim ersten Aufruf einen XModifyListener, der die in
+   * {@link #writtenFormFieldValues} gemerkten Werte bei jeder Änderung des
+   * Dokuments verwirft, die nicht von {@link #writeFormField(FormField, String)}
+   * stammt.
+   *
+   * @return false, wenn das Dokument keine Änderungen meldet. Dann dürfen keine
+   *         Schreibzugriffe übersprungen werden.
+   */
+  private boolean registerFormFieldModifyListener()
+  {
+    if (formFieldModifyListenerRegistered == null)
+    {
+      XModifyBroadcaster broadcaster = UnoRuntime
+          .queryInterface(XModifyBroadcaster.class, model.doc);
+      formFieldModifyListenerRegistered = broadcaster != null;
+      if (broadcaster != null)
+        broadcaster.addModifyListener(new XModifyListener()
+        {
+          @Override
+          public void modified(EventObject event)
+          {
+            if (!writingFormField)
+              writtenFormFieldValues.invalidateAll();
+          }
+
+          @Override
+          public void disposing(EventObject event)
+          {
+            writtenFormFieldValues.invalidateAll();
+          }
+        });
+    }
+    return formFieldModifyListenerRegistered;
+  }
+
   /**
    * Schaltet den Vorschaumodus für Formularfelder an oder aus - ist der
    * Vorschaumodus aktiviert, so werden alle Formularfelder mit den zuvor gesetzten
@@ -1597,6 +1843,10 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
    * die Änderungen nicht auf dem gerade offenen TextDocument durchgeführt werden,
    * sondern auf einer durch den OOo-Seriendruckmechanismus verwalteten Kopie des
    * Dokuments.
+   *
+   * Die aktuellen Inhalte der Formularfelder werden nur beim ersten Aufruf gelesen.
+   * Folgen mehrere Simulationen aufeinander (z.B. eine pro Datensatz eines
+   * Seriendrucks), muss danach {@link #endSimulationSession()} aufgerufen werden.
    */
   public synchronized void startSimulation()
   {
@@ -1604,8 +1854,28 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
     simulationResult.setFormFieldValues(model.getFormFieldValuesMap());
     simulationResult.setGroupsVisibilityState(model.getMapGroupIdToVisibilityState());
 
-    // Aktuell gesetzte FormField-Inhalte auslesen und simulationResults bekannt
-    // machen.
+    // Aktuell gesetzte FormField-Inhalte simulationResults bekannt machen.
+    if (simulationSnapshot == null)
+      simulationSnapshot = getSimulationSnapshot();
+    for (Map.Entry<FormField, String> entry : simulationSnapshot.entrySet())
+      simulationResult.setFormFieldContent(entry.getKey(), entry.getValue());
+  }
+
+  /**
+   * Verwirft die von {@link #startSimulation()} gelesenen Inhalte der
+   * Formularfelder. Wird am Ende eines Seriendrucks aufgerufen, damit der nächste
+   * Seriendruck die dann aktuellen Inhalte liest.
+   */
+  public synchronized void endSimulationSession()
+  {
+    simulationSnapshot = null;
+  }
+
+  /**
+   * Liest die aktuellen Inhalte aller Formularfelder aus dem Dokument.
+   */
+  private Map<FormField, String> getSimulationSnapshot()
+  {
     HashSet<FormField> ffs = new HashSet<>();
     for (List<FormField> l : model.getIdToFormFields().values())
       for (FormField ff : l)
@@ -1614,8 +1884,11 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
       for (FormField ff : l)
         ffs.add(ff);
     ffs.addAll(model.getStaticTextFieldFormFields());
+
+    Map<FormField, String> snapshot = new HashMap<>();
     for (FormField ff : ffs)
-      simulationResult.setFormFieldContent(ff, ff.getValue());
+      snapshot.put(ff, ff.getValue());
+    return Collections.unmodifiableMap(snapshot);
   }
 
   /**
@@ -1766,6 +2039,13 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
    * neue Wert angezeigt wird, ist ein Aufruf von {@link #updateFormFields(String)}
    * erforderlich.
    *
+   * Die persistenten Daten werden nicht sofort, sondern gesammelt von einem
+   * OnStoreFormFieldValues-Event geschrieben, das hinter den bereits erzeugten
+   * Events des Dokuments eingereiht wird, da dabei alle Formularwerte serialisiert
+   * werden müssen. Vor dem Speichern, Drucken und dem
+   * Seriendruck sorgt {@link #storeFormFieldValues()} dafür, dass die Werte
+   * geschrieben sind.
+   *
    * Befindet sich das TextDocumentModel in einem über {@link #startSimulation()}
    * gestarteten Simulationslauf, so werden die persistenten Daten nicht verändert
    * und der neue Wert nur in einem internen Objekt des Simulationslaufs gespeichert
@@ -1782,12 +2062,34 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
         model.getFormFieldValues().remove(fieldId);
       else
         model.getFormFieldValues().put(fieldId, value);
-      model.getPersistentData().setData(DataID.FORMULARWERTE, getFormFieldValuesString());
+      scheduleStoreFormFieldValues();
     }
     else
       simulationResult.setFormFieldValue(fieldId, value);
   }
 
+  /**
+   * Schreibt die mit {@link #setFormFieldValue(String, String)} geänderten
+   * Formularwerte in die persistenten Daten, falls dies noch nicht geschehen ist.
+   */
+  public synchronized void storeFormFieldValues()
+  {
+    storeFormValuesQueued = false;
+    if (!formValuesDirty)
+      return;
+    model.getPersistentData().setData(DataID.FORMULARWERTE, getFormFieldValuesString());
+    formValuesDirty = false;
+  }
+
+  private void scheduleStoreFormFieldValues()
+  {
+    formValuesDirty = true;
+    if (storeFormValuesQueued)
+      return;
+    storeFormValuesQueued = true;
+    WollMuxEventHandler.getInstance().handleStoreFormFieldValues(this);
+  }
+
   /**
    * Serialisiert die aktuellen Werte aller Fomularfelder.
    */
@@ -1887,6 +2189,7 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
           FunctionFactory.parseChildren(trafoConf, funcLib, dialogLib,
             getFunctionContext());
         getFunctionLibrary().add(trafoName, func);
+        trafoResults.invalidate();
       }
       catch (ConfigurationErrorException e)
       {
@@ -1956,8 +2259,11 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
           // ist.
           if (!model.getFormFieldValues().containsKey(fieldId))
             setFormFieldValue(fieldId, "");
-          updateFormFields(fieldId);
         }
+        if (fieldIds.length == 0)
+          updateStaticFormFields();
+        else
+          updateFormFields(Arrays.asList(fieldIds));
 
         // Nicht referenzierte Autofunktionen/InputUser-TextFieldMaster löschen
         cleanupGarbageOfUnreferencedAutofunctions();
@@ -2048,6 +2354,7 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
       FunctionFactory.parseChildren(trafoConf, funcLib, getDialogLibrary(),
         getFunctionContext());
     funcLib.add(trafoName, function);
+    trafoResults.invalidate();
 
     // Kinder von func löschen, damit sie später neu gesetzt werden können
     for (Iterator<ConfigThingy> iter = func.iterator(); iter.hasNext();)
@@ -2118,6 +2425,7 @@ public class TextDocumentController implements FormValueChangedListener, Visibil
     {
       funcLib.add(name, FunctionFactory.parseChildren(funcConf, funcLib, dialogLib,
         context));
+      trafoResults.invalidate();
 
       // Funktion zur Formularbeschreibung hinzufügen:
       ConfigThingy betterNameFunc = new ConfigThingy(name);
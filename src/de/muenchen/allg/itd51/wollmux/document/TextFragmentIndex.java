@@ -0,0 +1,75 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
+import de.muenchen.allg.itd51.wollmux.core.document.VisibleTextFragmentList;
+import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
+import de.muenchen.allg.itd51.wollmux.core.parser.InvalidIdentifierException;
+
+/**
+ * Liefert die URLs der Textfragmente aus der wollmux.conf. Die Auflösung über
+ * {@link VisibleTextFragmentList#getURLsByID(ConfigThingy, String)} durchsucht bei
+ * jedem Aufruf alle Textfragmente-Abschnitte und löst die Variablen auf. Das
+ * Ergebnis wird daher pro FRAG_ID einmal berechnet und als unveränderliche Liste
+ * gemerkt.
+ *
+ * Der Index gilt für genau eine geladene Konfiguration. Wird die wollmux.conf neu
+ * eingelesen (d.h. {@link WollMuxFiles#getWollmuxConf()} liefert ein anderes
+ * Objekt), wird er beim nächsten Zugriff verworfen.
+ */
+public final class TextFragmentIndex
+{
+  private static volatile TextFragmentIndex instance;
+
+  /**
+   * Die Konfiguration, aus der der Index aufgebaut wird.
+   */
+  private final ConfigThingy conf;
+
+  private final ConcurrentHashMap<String, List<String>> urls = new ConcurrentHashMap<>();
+
+  private TextFragmentIndex(ConfigThingy conf)
+  {
+    this.conf = conf;
+  }
+
+  /**
+   * Liefert die URLs des Textfragments fragId aus der aktuellen wollmux.conf in
+   * der Reihenfolge, in der sie versucht werden sollen.
+   *
+   * @param fragId
+   *          Die FRAG_ID des Textfragments.
+   * @return Eine unveränderliche Liste, die leer ist, wenn das Textfragment nicht
+   *         definiert ist.
+   * @throws InvalidIdentifierException
+   *           wenn fragId keine gültige FRAG_ID ist.
+   */
+  public static List<String> getURLsByID(String fragId)
+      throws InvalidIdentifierException
+  {
+    ConfigThingy conf = WollMuxFiles.getWollmuxConf();
+    TextFragmentIndex index = instance;
+    if (index == null || index.conf != conf)
+    {
+      index = new TextFragmentIndex(conf);
+      instance = index;
+    }
+    return index.get(fragId);
+  }
+
+  private List<String> get(String fragId) throws InvalidIdentifierException
+  {
+    List<String> result = urls.get(fragId);
+    if (result == null)
+    {
+      result = Collections.unmodifiableList(
+          new ArrayList<>(VisibleTextFragmentList.getURLsByID(conf, fragId)));
+      urls.putIfAbsent(fragId, result);
+    }
+    return result;
+  }
+}
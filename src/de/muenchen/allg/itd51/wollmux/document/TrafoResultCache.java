@@ -0,0 +1,167 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
+import de.muenchen.allg.itd51.wollmux.core.document.TextDocumentModel;
+import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
+import de.muenchen.allg.itd51.wollmux.core.parser.NodeNotFoundException;
+
+/**
+ * Merkt sich die Ergebnisse der TRAFO-Funktionen eines Dokuments zu den
+ * jeweiligen Parameterwerten. Beim Seriendruck und bei jeder Änderung eines
+ * Formularwertes werden dieselben TRAFOs immer wieder mit denselben Werten
+ * berechnet.
+ *
+ * Gemerkt werden nur die Ergebnisse von Funktionen, die ausschließlich von ihren
+ * Parametern abhängen. Funktionen, die (auch indirekt über BIND) EXTERN oder
+ * DIALOG verwenden oder deren Definition weder in der Formularbeschreibung noch in
+ * der wollmux.conf gefunden wird, werden immer neu berechnet. Ändert sich die
+ * Funktionsbibliothek des Dokuments, muss {@link #invalidate()} aufgerufen werden.
+ */
+class TrafoResultCache
+{
+  /**
+   * Maximale Anzahl der gemerkten Ergebnisse.
+   */
+  private static final int MAX_SIZE = 2000;
+
+  /**
+   * Funktionen, deren Ergebnis nicht nur von den Parametern abhängt.
+   */
+  private static final Set<String> IMPURE_FUNCTIONS = new HashSet<>(
+      Arrays.asList("EXTERN", "DIALOG"));
+
+  /**
+   * Liefert die Definition einer Funktion oder null, wenn sie nicht gefunden wird.
+   */
+  private final Function<String, ConfigThingy> definitions;
+
+  private final Cache<List<String>, String> results = CacheBuilder.newBuilder()
+      .maximumSize(MAX_SIZE).build();
+
+  private final Map<String, Boolean> pure = new ConcurrentHashMap<>();
+
+  TrafoResultCache(TextDocumentModel model)
+  {
+    this.definitions = functionName -> getDefinition(model, functionName);
+  }
+
+  TrafoResultCache(Function<String, ConfigThingy> definitions)
+  {
+    this.definitions = definitions;
+  }
+
+  /**
+   * Liefert das Ergebnis der TRAFO trafoName für die Parameterwerte values. Ist
+   * es noch nicht bekannt oder darf es nicht gemerkt werden, wird es mit compute
+   * berechnet.
+   */
+  String get(String trafoName, List<String> values, Supplier<String> compute)
+  {
+    if (!isPure(trafoName))
+      return compute.get();
+
+    List<String> key = new ArrayList<>(values.size() + 1);
+    key.add(trafoName);
+    key.addAll(values);
+    String result = results.getIfPresent(key);
+    if (result == null)
+    {
+      result = compute.get();
+      if (result != null)
+        results.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Verwirft alle gemerkten Ergebnisse.
+   */
+  void invalidate()
+  {
+    results.invalidateAll();
+    pure.clear();
+  }
+
+  /**
+   * Liefert true, wenn das Ergebnis der TRAFO trafoName ausschließlich von ihren
+   * Parametern abhängt.
+   */
+  boolean isPure(String trafoName)
+  {
+    Boolean result = pure.get(trafoName);
+    if (result == null)
+    {
+      result = isPure(trafoName, new HashSet<>());
+      pure.put(trafoName, result);
+    }
+    return result;
+  }
+
+  private boolean isPure(String functionName, Set<String> visited)
+  {
+    // Zyklen werden von der Funktion bewertet, die zuerst besucht wurde.
+    if (!visited.add(functionName))
+      return true;
+    ConfigThingy definition = definitions.apply(functionName);
+    return definition != null && isPure(definition, visited);
+  }
+
+  private boolean isPure(ConfigThingy conf, Set<String> visited)
+  {
+    for (ConfigThingy child : conf)
+    {
+      if (IMPURE_FUNCTIONS.contains(child.getName()))
+        return false;
+      if ("FUNCTION".equals(child.getName()) && child.count() == 1
+          && child.iterator().next().count() == 0)
+      {
+        // BIND(FUNCTION "Name" ...) verweist auf eine andere Funktion
+        if (!isPure(child.iterator().next().getName(), visited))
+          return false;
+      } else if (!isPure(child, visited))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Liefert die Definition der Funktion functionName aus der Formularbeschreibung
+   * oder der wollmux.conf oder null, wenn sie nicht gefunden wird.
+   */
+  private static ConfigThingy getDefinition(TextDocumentModel model,
+      String functionName)
+  {
+    try
+    {
+      ConfigThingy local = model.getFormDescription().query("Formular")
+          .query("Funktionen").query(functionName, 2);
+      if (local.count() > 0)
+        return local.getLastChild();
+      ConfigThingy conf = WollMuxFiles.getWollmuxConf();
+      if (conf == null)
+        return null;
+      ConfigThingy global = conf.query("Funktionen").query(functionName, 2);
+      if (global.count() > 0)
+        return global.getLastChild();
+    } catch (NodeNotFoundException e)
+    {
+      // nicht gefunden
+    }
+    return null;
+  }
+}
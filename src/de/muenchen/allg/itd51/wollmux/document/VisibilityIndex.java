@@ -0,0 +1,104 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.muenchen.allg.itd51.wollmux.core.document.VisibilityElement;
+
+/**
+ * Index der Sichtbarkeitselemente eines Dokuments nach Gruppen für
+ * {@link TextDocumentController#setVisibleState(String, boolean)}. Zu jedem
+ * Element wird gezählt, wie viele seiner Gruppen ausgeblendet sind, so dass bei
+ * der Änderung einer Gruppe nur deren Elemente betrachtet werden müssen.
+ *
+ * Der Index gilt für die Sichtbarkeitselemente zum Zeitpunkt seiner Erzeugung und
+ * für genau eine Map mit den Sichtbarkeitszuständen der Gruppen. Der Stand der
+ * Dokumentkommandos wird über eine Versionsnummer geprüft, die bei jeder
+ * Aktualisierung des Kommandobaums hochgezählt wird.
+ */
+class VisibilityIndex
+{
+  private final Map<String, Boolean> groupState;
+
+  private final long commandsVersion;
+
+  private final Map<String, List<VisibilityElement>> groupToElements = new HashMap<>();
+
+  /**
+   * Anzahl der ausgeblendeten Gruppen je Element.
+   */
+  private final Map<VisibilityElement, Integer> hiddenCount = new HashMap<>();
+
+  /**
+   * Die ausgeblendeten Gruppen, auf denen {@link #hiddenCount} beruht.
+   */
+  private final Set<String> hiddenGroups = new HashSet<>();
+
+  VisibilityIndex(Collection<VisibilityElement> elements, long commandsVersion,
+      Map<String, Boolean> groupState)
+  {
+    this.groupState = groupState;
+    this.commandsVersion = commandsVersion;
+    for (Map.Entry<String, Boolean> entry : groupState.entrySet())
+    {
+      if (Boolean.FALSE.equals(entry.getValue()))
+        hiddenGroups.add(entry.getKey());
+    }
+    for (VisibilityElement element : elements)
+    {
+      int count = 0;
+      for (String groupId : element.getGroups())
+      {
+        groupToElements.computeIfAbsent(groupId, k -> new ArrayList<>())
+            .add(element);
+        if (hiddenGroups.contains(groupId))
+          count++;
+      }
+      hiddenCount.put(element, count);
+    }
+  }
+
+  /**
+   * Liefert true, wenn der Index für den Stand commandsVersion der
+   * Dokumentkommandos und die Sichtbarkeitszustände groupState aufgebaut wurde.
+   */
+  boolean isValidFor(long commandsVersion, Map<String, Boolean> groupState)
+  {
+    return this.groupState == groupState
+        && this.commandsVersion == commandsVersion;
+  }
+
+  /**
+   * Vermerkt den neuen Sichtbarkeitszustand der Gruppe groupId.
+   *
+   * @return Die Sichtbarkeitselemente, die zur Gruppe groupId gehören.
+   */
+  List<VisibilityElement> setVisible(String groupId, boolean visible)
+  {
+    List<VisibilityElement> elements = groupToElements.getOrDefault(groupId,
+        Collections.emptyList());
+    boolean changed = visible ? hiddenGroups.remove(groupId)
+        : hiddenGroups.add(groupId);
+    if (changed)
+    {
+      int delta = visible ? -1 : 1;
+      for (VisibilityElement element : elements)
+        hiddenCount.merge(element, delta, Integer::sum);
+    }
+    return elements;
+  }
+
+  /**
+   * Liefert true, wenn keine Gruppe des Elements ausgeblendet ist.
+   */
+  boolean isVisible(VisibilityElement element)
+  {
+    return hiddenCount.getOrDefault(element, 0) == 0;
+  }
+}
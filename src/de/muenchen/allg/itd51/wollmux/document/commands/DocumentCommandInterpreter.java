@@ -68,6 +68,8 @@ import de.muenchen.allg.itd51.wollmux.core.document.TextDocumentModel;
 import de.muenchen.allg.itd51.wollmux.core.document.WMCommandsFailedException;
 import de.muenchen.allg.itd51.wollmux.core.util.L;
 import de.muenchen.allg.itd51.wollmux.core.util.Utils;
+import de.muenchen.allg.itd51.wollmux.document.ExpandedTemplateCache;
+import de.muenchen.allg.itd51.wollmux.document.ProcessingTrace;
 import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
 
 /**
@@ -89,6 +91,11 @@ public class DocumentCommandInterpreter
    */
   boolean debugMode;
 
+  /**
+   * Misst die Dauer der einzelnen Bearbeitungsschritte oder null.
+   */
+  private ProcessingTrace trace;
+
   /**
    * Der Konstruktor erzeugt einen neuen Kommandointerpreter, der alle
    * Dokumentkommandos im übergebenen Dokument xDoc scannen und interpretieren kann.
@@ -133,6 +140,31 @@ public class DocumentCommandInterpreter
     return getDocumentController().getModel();
   }
 
+  /**
+   * Setzt den {@link ProcessingTrace}, in dem die Schritte von
+   * {@link #executeTemplateCommands()} gemessen werden.
+   */
+  public void setTrace(ProcessingTrace trace)
+  {
+    this.trace = trace;
+  }
+
+  private void stage(String name)
+  {
+    if (trace != null)
+      trace.stage(name);
+  }
+
+  /**
+   * Zählt ein eingefügtes Textfragment bzw. geladene Formatvorlagen im
+   * {@link ProcessingTrace}.
+   */
+  void countFragment()
+  {
+    if (trace != null)
+      trace.countFragment();
+  }
+
   /**
    * Diese Methode sollte vor {@link #executeTemplateCommands()} aufgerufen werden
    * und sorgt dafür, dass alle globalen Einstellungen des Dokuments (setType,
@@ -209,18 +241,28 @@ public class DocumentCommandInterpreter
     {
       LOGGER.debug("executeTemplateCommands");
       getDocumentController().getModel().setDocumentModifiable(false);
+
+      // Soll die Expansion im ExpandedTemplateCache gespeichert werden?
+      ExpandedTemplateCache cache = ExpandedTemplateCache.getInstance();
+      ExpandedTemplateCache.Entry cacheEntry = null;
+      if (cache != null && !debugMode)
+        cacheEntry = cache.startRecording(getDocumentController().getModel().doc);
+
       // Zuerst alle Kommandos bearbeiten, die irgendwie Kinder bekommen
       // können, damit der DocumentCommandTree vollständig aufgebaut werden
       // kann.
+      stage("DocumentExpander");
       errors +=
-        new DocumentExpander(this, getDocumentController().getModel().getFragUrls()).execute(getDocumentController().getModel().getDocumentCommands());
+        new DocumentExpander(this, getDocumentController().getModel().getFragUrls(), cacheEntry).execute(getDocumentController().getModel().getDocumentCommands());
 
       // Überträgt beim übergebenen XTextDocument doc die Eigenschaften der
       // Seitenvorlage Wollmuxseite auf die Seitenvorlage Standard, falls
       // Seitenvorlage Wollmuxseite vorhanden ist.
+      stage("pageStyleWollmuxseiteToStandard");
       pageStyleWollmuxseiteToStandard(getDocumentController().getModel().doc);
 
       // Ziffern-Anpassen der Sachleitenden Verfügungen aufrufen:
+      stage("ziffernAnpassen");
       SachleitendeVerfuegung.ziffernAnpassen(getDocumentController());
 
       // Jetzt können die TextFelder innerhalb der updateFields Kommandos
@@ -231,11 +273,24 @@ public class DocumentCommandInterpreter
       // übereinander liegen kann. Ausserdem liegt updateFields thematisch näher
       // am expandieren der Textfragmente, da updateFields im Prinzip nur dessen
       // Schwäche beseitigt.
+      stage("TextFieldUpdater");
       errors +=
         new TextFieldUpdater(this).execute(getDocumentController().getModel().getDocumentCommands());
 
+      // Wird die Expansion gespeichert, muss der Müll bereits jetzt entfernt
+      // werden, damit das gespeicherte Dokument noch keine benutzerspezifischen
+      // Inhalte der Hauptverarbeitung enthält.
+      if (cacheEntry != null)
+      {
+        stage("SurroundingGarbageCollector");
+        errors += collectGarbage();
+        if (errors == 0)
+          cache.store(getDocumentController().getModel().doc, cacheEntry);
+      }
+
       // Hauptverarbeitung: Jetzt alle noch übrigen DocumentCommands (z.B.
       // insertValues) in einem einzigen Durchlauf mit execute bearbeiten.
+      stage("MainProcessor");
       errors +=
         new MainProcessor(this).execute(getDocumentController().getModel().getDocumentCommands());
 
@@ -248,13 +303,11 @@ public class DocumentCommandInterpreter
       // Absätze zum Beginn und Ende der insertFrag bzw. insertContent-Kommandos
       // sauber erkennen und entfernen.
       // errors += new EmptyParagraphCleaner().execute(tree);
-      SurroundingGarbageCollector collect = new SurroundingGarbageCollector(this);
-      errors +=
-        collect.execute(getDocumentController().getModel().getDocumentCommands());
-      collect.removeGarbage();
-
-      // da hier bookmarks entfernt werden, muss der Baum upgedatet werden
-      getDocumentController().updateDocumentCommands();
+      if (cacheEntry == null)
+      {
+        stage("SurroundingGarbageCollector");
+        errors += collectGarbage();
+      }
 
       // Jetzt wird das Dokument als Formulardokument markiert, wenn mindestens ein
       // Formularfenster definiert ist.
@@ -279,6 +332,24 @@ public class DocumentCommandInterpreter
     }
   }
 
+  /**
+   * Entfernt die Einfügemarken und leeren Absätze um die insertFrag- und
+   * insertContent-Kommandos und aktualisiert anschließend den Kommandobaum.
+   *
+   * @return Anzahl der aufgetretenen Fehler.
+   */
+  private int collectGarbage()
+  {
+    SurroundingGarbageCollector collect = new SurroundingGarbageCollector(this);
+    int errors =
+      collect.execute(getDocumentController().getModel().getDocumentCommands());
+    collect.removeGarbage();
+
+    // da hier bookmarks entfernt werden, muss der Baum upgedatet werden
+    getDocumentController().updateDocumentCommands();
+    return errors;
+  }
+
   /**
    * Überträgt beim übergebenen XTextDocument doc die Eigenschaften der Seitenvorlage
    * Wollmuxseite auf die Seitenvorlage Standard, falls Seitenvorlage Wollmuxseite
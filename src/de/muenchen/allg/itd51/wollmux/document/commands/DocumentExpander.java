@@ -1,12 +1,15 @@
 package de.muenchen.allg.itd51.wollmux.document.commands;
 
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,9 +29,7 @@ import com.sun.star.text.XTextRange;
 import de.muenchen.allg.afid.UNO;
 import de.muenchen.allg.afid.UnoProps;
 import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
-import de.muenchen.allg.itd51.wollmux.WollMuxSingleton;
 import de.muenchen.allg.itd51.wollmux.core.document.TextDocumentModel.OverrideFragChainException;
-import de.muenchen.allg.itd51.wollmux.core.document.VisibleTextFragmentList;
 import de.muenchen.allg.itd51.wollmux.core.document.WMCommandsFailedException;
 import de.muenchen.allg.itd51.wollmux.core.document.commands.AbstractExecutor;
 import de.muenchen.allg.itd51.wollmux.core.document.commands.DocumentCommand;
@@ -43,7 +44,10 @@ import de.muenchen.allg.itd51.wollmux.core.util.L;
 import de.muenchen.allg.itd51.wollmux.core.util.Utils;
 import de.muenchen.allg.itd51.wollmux.dialog.InfoDialog;
 import de.muenchen.allg.itd51.wollmux.document.DocumentLoader;
+import de.muenchen.allg.itd51.wollmux.document.ExpandedTemplateCache;
+import de.muenchen.allg.itd51.wollmux.document.TextFragmentIndex;
 import de.muenchen.allg.itd51.wollmux.event.WollMuxEventHandler;
+import de.muenchen.allg.ooo.TextDocument;
 
 /**
  * Der DocumentExpander sorgt dafür, dass das Dokument nach Ausführung der
@@ -64,10 +68,27 @@ class DocumentExpander extends AbstractExecutor
    */
   private final DocumentCommandInterpreter documentCommandInterpreter;
 
+  /**
+   * Erkennt die Namen der Bookmarks von Dokumentkommandos.
+   */
+  private static final Pattern WM_BOOKMARK = Pattern
+      .compile("\\A\\s*WM\\s*\\(.*\\)\\s*\\d*\\z");
+
   private String[] fragUrls;
 
+  /**
+   * Die Bereiche, in die im aktuellen Durchlauf Textfragmente eingefügt wurden.
+   */
+  private List<XTextRange> insertedRanges = new ArrayList<>();
+
   private int fragUrlsCount = 0;
 
+  /**
+   * Sammelt die eingefügten Textfragmente für den {@link ExpandedTemplateCache}
+   * oder null, wenn die Expansion nicht gespeichert wird.
+   */
+  private ExpandedTemplateCache.Entry cacheEntry;
+
   // Markierung des ersten nicht ausgefüllten Platzhalter nach dem Einfügen
   // von Textbausteinen
   private boolean firstEmptyPlaceholder = false;
@@ -87,6 +108,17 @@ class DocumentExpander extends AbstractExecutor
     this.fragUrlsCount = 0;
   }
 
+  /**
+   * Wie {@link #DocumentExpander(DocumentCommandInterpreter, String[])}, wobei die
+   * eingefügten Textfragmente zusätzlich in cacheEntry vermerkt werden.
+   */
+  public DocumentExpander(DocumentCommandInterpreter documentCommandInterpreter,
+      String[] fragUrls, ExpandedTemplateCache.Entry cacheEntry)
+  {
+    this(documentCommandInterpreter, fragUrls);
+    this.cacheEntry = cacheEntry;
+  }
+
   /**
    * Führt die Dokumentkommandos von commands aus, welche so lange aktualisiert
    * werden, bis das Dokument vollständig aufgebaut ist. Die Dokumentkommandos
@@ -101,19 +133,81 @@ class DocumentExpander extends AbstractExecutor
   {
     int errors = 0;
     int i = 0;
+    boolean updated;
 
     // so lange wiederholen, bis sich der Baum durch das Expandieren nicht
-    // mehr ändert.
+    // mehr ändert. Zwischendurch wird der Baum nur neu aufgebaut, wenn die
+    // eingefügten Textfragmente neue Dokumentkommandos enthalten.
     do
     {
       i++;
+      insertedRanges.clear();
       errors += executeOverrideFrags(commands);
+      prefetchFragments(commands);
       errors += executeAll(commands);
-    } while (commands.update() && i < 50);
+      updated = containsNewCommands(commands);
+    } while (updated && updateDocumentCommands() && i < 50);
+
+    // Am Ende wird der Baum in jedem Fall aktualisiert, damit er nur noch die
+    // tatsächlich im Dokument vorhandenen Dokumentkommandos enthält.
+    if (!updated)
+      updateDocumentCommands();
 
     return errors;
   }
 
+  /**
+   * Aktualisiert den Kommandobaum über den TextDocumentController, damit dieser
+   * davon abhängige Daten verwerfen kann.
+   *
+   * @return true, wenn sich der Baum geändert hat.
+   */
+  private boolean updateDocumentCommands()
+  {
+    return documentCommandInterpreter.getDocumentController()
+        .updateDocumentCommands();
+  }
+
+  /**
+   * Prüft, ob die im aktuellen Durchlauf eingefügten Textfragmente Bookmarks von
+   * Dokumentkommandos enthalten, die noch nicht in commands enthalten sind. Dabei
+   * werden nur die Bookmarks in den eingefügten Bereichen untersucht und nicht die
+   * des ganzen Dokuments.
+   *
+   * @param commands
+   * @return true, wenn commands aktualisiert werden muss.
+   */
+  private boolean containsNewCommands(DocumentCommands commands)
+  {
+    if (insertedRanges.isEmpty())
+      return false;
+
+    Set<String> known = new HashSet<>();
+    for (Iterator<DocumentCommand> iter = commands.iterator(); iter.hasNext();)
+    {
+      known.add(iter.next().getBookmarkName());
+    }
+
+    for (XTextRange range : insertedRanges)
+    {
+      try
+      {
+        for (String name : TextDocument.getBookmarkNamesMatching(WM_BOOKMARK, range))
+        {
+          if (!known.contains(name))
+            return true;
+        }
+      }
+      catch (java.lang.Exception e)
+      {
+        // Im Zweifel den ganzen Baum aktualisieren.
+        LOGGER.debug("", e);
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * führt alle OverrideFrag-Kommandos aus commands aus, wenn sie nicht den Status
    * DONE=true oder ERROR=true besitzen.
@@ -142,6 +236,73 @@ class DocumentExpander extends AbstractExecutor
     return errors;
   }
 
+  /**
+   * Lädt die Textfragmente aller noch nicht ausgeführten insertFrag- und
+   * insertContent-Kommandos parallel in den Cache des {@link DocumentLoader}, damit
+   * sie beim anschließenden Einfügen nicht einzeln nacheinander geladen werden.
+   * Vorgeladen wird jeweils die erste URL eines Fragments, die weiteren URLs werden
+   * nur benötigt, wenn die erste nicht funktioniert. Muss nach den
+   * OverrideFrag-Kommandos ausgeführt werden, da diese das Mapping der FRAG_IDs
+   * festlegen.
+   *
+   * @param commands
+   */
+  private void prefetchFragments(DocumentCommands commands)
+  {
+    List<String> paths = new ArrayList<>();
+    int nextFragUrl = fragUrlsCount;
+    for (Iterator<DocumentCommand> iter = commands.iterator(); iter.hasNext();)
+    {
+      DocumentCommand cmd = iter.next();
+      if (cmd.isDone() || cmd.hasError())
+        continue;
+
+      if (cmd instanceof InsertFrag && !((InsertFrag) cmd).importStylesOnly())
+      {
+        try
+        {
+          String fragId = this.documentCommandInterpreter.getModel()
+              .getOverrideFrag(((InsertFrag) cmd).getFragID());
+          if (fragId.length() == 0)
+            continue;
+          List<String> urls = TextFragmentIndex.getURLsByID(fragId);
+          if (!urls.isEmpty())
+            addPrefetchPath(paths, urls.get(0));
+        }
+        catch (java.lang.Exception e)
+        {
+          // Fehler werden beim Ausführen des Kommandos behandelt.
+          LOGGER.debug("", e);
+        }
+      }
+      else if (cmd instanceof InsertContent && nextFragUrl < fragUrls.length)
+      {
+        addPrefetchPath(paths, fragUrls[nextFragUrl++]);
+      }
+    }
+    DocumentLoader.getInstance().prefetch(paths);
+  }
+
+  /**
+   * Fügt die URL urlStr in der Form, in der sie
+   * {@link #insertDocumentFromURL(DocumentCommand, URL)} an den DocumentLoader
+   * übergibt, zu paths hinzu.
+   */
+  private void addPrefetchPath(List<String> paths, String urlStr)
+  {
+    try
+    {
+      String path = UNO
+          .getParsedUNOUrl(WollMuxFiles.makeURL(urlStr).toExternalForm()).Complete;
+      if (path != null)
+        paths.add(path);
+    }
+    catch (MalformedURLException e)
+    {
+      LOGGER.debug("", e);
+    }
+  }
+
   /**
    * Wertet ein OverrideFrag-Kommandos aus, über das Fragmente umgemapped werden
    * können, und setzt das Kommando sofort auf DONE. Dies geschieht vor der
@@ -191,7 +352,7 @@ class DocumentExpander extends AbstractExecutor
         return 0;
       }
 
-      List<String> urls = VisibleTextFragmentList.getURLsByID(WollMuxFiles.getWollmuxConf(), fragId);
+      List<String> urls = TextFragmentIndex.getURLsByID(fragId);
       if (urls.isEmpty())
       {
         throw new ConfigurationErrorException(L.m(
@@ -200,9 +361,11 @@ class DocumentExpander extends AbstractExecutor
       }
       // Iterator über URLs
       Iterator<String> iter = urls.iterator();
+      int index = -1;
       while (iter.hasNext() && !found)
       {
         String urlStr = iter.next();
+        index++;
         try
         {
           URL url = WollMuxFiles.makeURL(urlStr);
@@ -233,6 +396,9 @@ class DocumentExpander extends AbstractExecutor
         throw new Exception(errors);
       }
 
+      if (cacheEntry != null)
+        cacheEntry.addFragment(fragId, urls, index);
+
       fillPlaceholders(this.documentCommandInterpreter.getModel().doc, this.documentCommandInterpreter.getModel().getViewCursor(), cmd.getTextCursor(),
         cmd.getArgs());
     }
@@ -332,16 +498,15 @@ class DocumentExpander extends AbstractExecutor
   private void insertDocumentFromURL(DocumentCommand cmd, URL url)
       throws IllegalArgumentException, java.io.IOException, IOException
   {
-    // Workaround: OOo friert ein, wenn ressource bei insertDocumentFromURL
-    // nicht auflösbar. http://qa.openoffice.org/issues/show_bug.cgi?id=57049
-    // Hier wird versucht, die URL über den java-Klasse url aufzulösen und bei
-    // Fehlern abgebrochen.
-    WollMuxSingleton.checkURL(url);
-
     // URL durch den URLTransformer von OOo jagen, damit die URL auch von OOo
     // verarbeitet werden kann.
     String urlStr = UNO.getParsedUNOUrl(url.toExternalForm()).Complete;
 
+    // Workaround: OOo friert ein, wenn ressource bei insertDocumentFromURL
+    // nicht auflösbar. http://qa.openoffice.org/issues/show_bug.cgi?id=57049
+    // Hier wird das Fragment vorher geladen und bei Fehlern abgebrochen.
+    checkAvailable(url, urlStr);
+
     // Workaround: Alten Paragraphenstyle merken. Problembeschreibung siehe
     // http://qa.openoffice.org/issues/show_bug.cgi?id=60475
     String paraStyleName = null;
@@ -385,6 +550,10 @@ class DocumentExpander extends AbstractExecutor
     if (UNO.XDocumentInsertable(insCursor) != null && urlStr != null)
     {
       DocumentLoader.getInstance().insertDocument(insCursor, urlStr);
+      this.documentCommandInterpreter.countFragment();
+      XTextRange inserted = cmd.getTextCursor();
+      if (inserted != null)
+        insertedRanges.add(inserted);
     }
 
     // Workaround: ParagraphStyleName für den letzten eingefügten Paragraphen
@@ -402,6 +571,24 @@ class DocumentExpander extends AbstractExecutor
     }
   }
 
+  /**
+   * Prüft über den {@link DocumentLoader}, ob das Fragment urlStr geladen werden
+   * kann. Der Download wird dabei gecacht und beim Einfügen wiederverwendet.
+   *
+   * @param url
+   *          die ursprüngliche URL (für Fehlermeldungen)
+   * @param urlStr
+   *          die von OOo aufbereitete URL
+   * @throws java.io.IOException
+   *           falls das Fragment nicht geladen werden kann.
+   */
+  private void checkAvailable(URL url, String urlStr) throws java.io.IOException
+  {
+    if (urlStr == null)
+      throw new java.io.IOException(L.m("Die URL '%1' ist ungültig.", url));
+    DocumentLoader.getInstance().checkAvailable(urlStr);
+  }
+
   /**
    * Diese Methode importiert alle in styles angegebenen Formatvorlagen aus dem
    * durch url beschriebenen Fragment definiert und ersetzt dabei auch die bereits
@@ -423,15 +610,15 @@ class DocumentExpander extends AbstractExecutor
   private void insertStylesFromURL(DocumentCommand cmd, Set<String> styles, URL url)
       throws java.io.IOException, IOException
   {
-    // Workaround für Einfrierfehler von OOo, wenn ressource nicht auflösbar
-    // (ich habe nicht geprüft, ob das für insertStylesFromURL notwendig ist,
-    // aber schaden kann es bestimmt nicht)
-    WollMuxSingleton.checkURL(url);
-
     // URL durch den URLTransformer von OOo jagen, damit die URL auch von OOo
     // verarbeitet werden kann.
     String urlStr = UNO.getParsedUNOUrl(url.toExternalForm()).Complete;
 
+    // Workaround für Einfrierfehler von OOo, wenn ressource nicht auflösbar
+    // (ich habe nicht geprüft, ob das für insertStylesFromURL notwendig ist,
+    // aber schaden kann es bestimmt nicht)
+    checkAvailable(url, urlStr);
+
     // Styles einfügen:
     try
     {
@@ -450,6 +637,7 @@ class DocumentExpander extends AbstractExecutor
       XStyleFamiliesSupplier sfs = UNO.XStyleFamiliesSupplier(this.documentCommandInterpreter.getModel().doc);
       XStyleLoader loader = UNO.XStyleLoader(sfs.getStyleFamilies());
       loader.loadStylesFromURL(urlStr, props.getProps());
+      this.documentCommandInterpreter.countFragment();
     }
     catch (NullPointerException e)
     {
@@ -1,7 +1,7 @@
 package de.muenchen.allg.itd51.wollmux.event;
 
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 import java.net.URLDecoder;
 
 import org.slf4j.Logger;
@@ -37,6 +37,9 @@ import de.muenchen.allg.itd51.wollmux.core.util.L;
  * props ist das PropertyValue[], das auch schon der ursprünglichen dispatch Methode
  * mitgeliefert wurde.
  *
+ * Die Zuordnung der URLs zu den Methoden wird pro Klasse einmalig in einer
+ * {@link DispatchRoutingTable} abgelegt.
+ *
  * @author daniel.sikeler
  *
  */
@@ -142,16 +145,18 @@ public abstract class BaseDispatch implements XDispatch
     LOGGER.trace(this.getClass().getSimpleName() + ".dispatch('" + url.Complete
       + "')");
 
-    String arg = getMethodArgument(url);
-
-    String methodName = getDispatchMethodName(url);
+    MethodHandle method = DispatchRoutingTable.of(this.getClass())
+        .getDispatchMethod(url);
+    if (method == null)
+    {
+      LOGGER.error(L.m("Keine Methode %1 in %2", getDispatchMethodName(url),
+          this.getClass().getName()));
+      return;
+    }
 
     try
     {
-      Class<? extends BaseDispatch> myClass = this.getClass();
-      Method method =
-        myClass.getDeclaredMethod(methodName, String.class, PropertyValue[].class);
-      method.invoke(this, arg, props);
+      method.invoke(this, getMethodArgument(url), props);
     }
     catch (Throwable x)
     {
@@ -168,14 +173,16 @@ public abstract class BaseDispatch implements XDispatch
    */
   public boolean queryStatus(URL url)
   {
+    MethodHandle method = DispatchRoutingTable.of(this.getClass())
+        .getStatusMethod(url);
+    if (method == null)
+    {
+      return true;
+    }
+
     try
     {
-      String methodName = getStatusMethodName(url);
-      Class<? extends BaseDispatch> myClass = this.getClass();
-      Method method =
-        myClass.getDeclaredMethod(methodName);
-      Boolean ret = (Boolean) method.invoke(this);
-      return ret.booleanValue();
+      return (boolean) method.invoke(this);
     }
     catch (Throwable x)
     {
@@ -35,13 +35,11 @@
  */
 package de.muenchen.allg.itd51.wollmux.event;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.sun.star.beans.PropertyValue;
 import com.sun.star.frame.DispatchDescriptor;
 import com.sun.star.frame.FrameAction;
 import com.sun.star.frame.XDispatch;
@@ -50,10 +48,10 @@ import com.sun.star.frame.XDispatchProviderInterceptor;
 import com.sun.star.frame.XFrame;
 import com.sun.star.frame.XFrameActionListener;
 import com.sun.star.lang.EventObject;
-import com.sun.star.uno.UnoRuntime;
 import com.sun.star.util.URL;
 
 import de.muenchen.allg.afid.UNO;
+import de.muenchen.allg.itd51.wollmux.HashableComponent;
 import de.muenchen.allg.itd51.wollmux.core.util.L;
 
 /**
@@ -76,16 +74,16 @@ public class DispatchProviderAndInterceptor implements XDispatchProvider,
     new DispatchProviderAndInterceptor();
 
   /**
-   * Einthält eine Liste aller jemals registrierten dokumentgebundener
-   * {@link DispatchProviderAndInterceptor}-Objekte; Die Liste wird benötigt um
-   * festzustellen, ob der WollMux bereits einen
+   * Einthält alle registrierten dokumentgebundener
+   * {@link DispatchProviderAndInterceptor}-Objekte, indiziert über ihren Frame; Die
+   * Map wird benötigt um festzustellen, ob der WollMux bereits einen
    * {@link DispatchProviderAndInterceptor} auf einem Frame registriert hat
    * (Vermeidung von Doppeleintragungen) und um
    * {@link DispatchProviderAndInterceptor}-Objekte deregistrieren zu können, wenn
    * das zugehörige Textdokument geschlossen wird.
    */
-  private static final Set<DispatchProviderAndInterceptor> documentDispatchProviderAndInterceptors =
-    new HashSet<DispatchProviderAndInterceptor>();
+  private static final ConcurrentHashMap<HashableComponent, DispatchProviderAndInterceptor> documentDispatchProviderAndInterceptors =
+    new ConcurrentHashMap<>();
 
   private XDispatchProvider slave = null;
 
@@ -148,24 +146,16 @@ public class DispatchProviderAndInterceptor implements XDispatchProvider,
   }
 
   /**
-   * Liefert true, wenn die Methode methodName(String, PropertyValue[]) in der Klasse
-   * c vorhanden ist, andern falls false.
+   * Liefert true, wenn die Methode dispatch_name(String, PropertyValue[]) für url
+   * in der Klasse c vorhanden ist, andern falls false.
    * 
    * @author Matthias Benkmann (D-III-ITD-D101)
    * 
    *         TESTED
    */
-  protected boolean hasMethod(Class<?> c, String methodName)
+  protected boolean hasMethod(Class<?> c, URL url)
   {
-    try
-    {
-      c.getDeclaredMethod(methodName, String.class, PropertyValue[].class);
-      return true;
-    }
-    catch (Throwable x)
-    {
-      return false;
-    }
+    return DispatchRoutingTable.of(c).canDispatch(url);
   }
 
   /*
@@ -176,20 +166,18 @@ public class DispatchProviderAndInterceptor implements XDispatchProvider,
    */
   public XDispatch queryDispatch(URL url, String frameName, int fsFlag)
   {
-    String methodName = Dispatch.getDispatchMethodName(url);
-
-    if (hasMethod(Dispatch.class, methodName))
+    if (hasMethod(Dispatch.class, url))
       return new Dispatch();
-    else if (hasMethod(NotifyingDispatch.class, methodName))
+    else if (hasMethod(NotifyingDispatch.class, url))
       return new NotifyingDispatch();
     else
     {
       if (frame != null)
       {
-        if (hasMethod(DocumentDispatch.class, methodName))
+        if (hasMethod(DocumentDispatch.class, url))
           return new DocumentDispatch(getOrigDispatch(url, frameName, fsFlag), url,
             frame);
-        else if (hasMethod(DocumentNotifyingDispatch.class, methodName))
+        else if (hasMethod(DocumentNotifyingDispatch.class, url))
           return new DocumentNotifyingDispatch(getOrigDispatch(url, frameName,
             fsFlag), url, frame);
       }
@@ -244,16 +232,14 @@ public class DispatchProviderAndInterceptor implements XDispatchProvider,
       || UNO.XDispatchProvider(frame) == null) return;
 
     // DispatchInterceptor registrieren (wenn nicht bereits registriert):
-    if (getRegisteredDPI(frame) == null)
+    DispatchProviderAndInterceptor dpi = new DispatchProviderAndInterceptor(frame);
+    if (registerDPI(dpi))
     {
-      DispatchProviderAndInterceptor dpi = new DispatchProviderAndInterceptor(frame);
-
       LOGGER.debug(L.m("Registriere DocumentDispatchInterceptor #%1 für frame #%2",
         Integer.valueOf(dpi.hashCode()), Integer.valueOf(frame.hashCode())));
 
       UNO.XDispatchProviderInterception(frame).registerDispatchProviderInterceptor(
         dpi);
-      registerDPI(dpi);
 
       dpi.frameActionListener = new DPIFrameActionListener();
       frame.addFrameActionListener(dpi.frameActionListener);
@@ -309,55 +295,46 @@ public class DispatchProviderAndInterceptor implements XDispatchProvider,
 
   /**
    * Merkt sich den übergebenen dokumentgebundenen DispatchProviderAndInterceptor in
-   * einem internen statischen Set; Der Zugriff auf dieses Set erfolgt
-   * synchronisiert. Ist dpi==null wird nichts gemacht.
+   * einer internen statischen Map, falls für seinen Frame noch keiner registriert
+   * ist. Ist dpi==null wird nichts gemacht.
+   * 
+   * @return true, wenn dpi registriert wurde, false wenn für den Frame bereits ein
+   *         DispatchProviderAndInterceptor registriert ist.
    * 
    * @author Christoph Lutz (D-III-ITD-D101) TESTED
    */
-  private static void registerDPI(DispatchProviderAndInterceptor dpi)
+  private static boolean registerDPI(DispatchProviderAndInterceptor dpi)
   {
-    if (dpi == null) return;
-    synchronized (documentDispatchProviderAndInterceptors)
-    {
-      documentDispatchProviderAndInterceptors.add(dpi);
-    }
+    if (dpi == null || dpi.frame == null) return false;
+    return documentDispatchProviderAndInterceptors.putIfAbsent(
+      new HashableComponent(dpi.frame), dpi) == null;
   }
 
   /**
    * Entfernt den übergebenen dokumentgebundenen DispatchProviderAndInterceptor aus
-   * einem internen statischen Set; Der Zugriff auf dieses Set erfolgt
-   * synchronisiert. Ist dpi==null wird nichts gemacht.
+   * einer internen statischen Map. Ist dpi==null wird nichts gemacht.
    * 
    * @author Christoph Lutz (D-III-ITD-D101) TESTED
    */
   private static void deregisterDPI(DispatchProviderAndInterceptor dpi)
   {
-    if (dpi == null) return;
-    synchronized (documentDispatchProviderAndInterceptors)
-    {
-      LOGGER.debug(L.m("Interne Freigabe des DocumentDispatchInterceptor #%1",
-        Integer.valueOf(dpi.hashCode())));
-      documentDispatchProviderAndInterceptors.remove(dpi);
-    }
+    if (dpi == null || dpi.frame == null) return;
+    LOGGER.debug(L.m("Interne Freigabe des DocumentDispatchInterceptor #%1",
+      Integer.valueOf(dpi.hashCode())));
+    documentDispatchProviderAndInterceptors.remove(new HashableComponent(dpi.frame),
+      dpi);
   }
 
   /**
    * Liefert den für frame bereits vom WollMux registrierten
    * {@link DispatchProviderAndInterceptor} zurück, oder null, wenn der WollMux auf
-   * diesen Frame noch keinen {@link DispatchProviderAndInterceptor} registriert hat;
-   * Die Abfrage auf das interne Set der registrierten
-   * {@link DispatchProviderAndInterceptor}-Objekten ist synchronisiert.
+   * diesen Frame noch keinen {@link DispatchProviderAndInterceptor} registriert hat.
    * 
    * @author Christoph Lutz (D-III-ITD-D101) TESTED
    */
   private static DispatchProviderAndInterceptor getRegisteredDPI(XFrame frame)
   {
     if (frame == null) return null;
-    synchronized (documentDispatchProviderAndInterceptors)
-    {
-      for (DispatchProviderAndInterceptor dpi : documentDispatchProviderAndInterceptors)
-        if (dpi.frame != null && UnoRuntime.areSame(dpi.frame, frame)) return dpi;
-    }
-    return null;
+    return documentDispatchProviderAndInterceptors.get(new HashableComponent(frame));
   }
 }
@@ -0,0 +1,192 @@
+package de.muenchen.allg.itd51.wollmux.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.frame.XDispatchResultListener;
+import com.sun.star.util.URL;
+
+/**
+ * Enthält für eine Dispatch-Klasse die Zuordnung von Dispatch-URLs zu ihren
+ * dispatch_name- und status_name-Methoden (siehe {@link BaseDispatch}). Die Tabelle
+ * wird einmal pro Klasse aus den deklarierten Methoden aufgebaut und ist danach
+ * unveränderlich.
+ *
+ * Die Suche vergleicht die URL zeichenweise mit den Methodennamen, wobei
+ * Großbuchstaben wie Kleinbuchstaben und nichtalphanumerische Zeichen wie
+ * Unterstriche behandelt werden und beim ersten '#' abgebrochen wird. Dadurch
+ * kommt die Suche ohne String-Operationen und Exceptions aus, was wichtig ist, weil
+ * LibreOffice queryDispatch für jedes UI-Kommando und jede Statusabfrage aufruft.
+ */
+final class DispatchRoutingTable
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(DispatchRoutingTable.class);
+
+  private static final String DISPATCH_PREFIX = "dispatch_";
+
+  private static final String STATUS_PREFIX = "status_";
+
+  private static final ClassValue<DispatchRoutingTable> TABLES = new ClassValue<DispatchRoutingTable>()
+  {
+    @Override
+    protected DispatchRoutingTable computeValue(Class<?> type)
+    {
+      return new DispatchRoutingTable(type);
+    }
+  };
+
+  /**
+   * Vergleicht Kommandos so, wie sie von
+   * {@link BaseDispatch#getDispatchMethodName(URL)} normalisiert werden.
+   */
+  private static final Comparator<String> COMMAND_ORDER = (a, b) -> {
+    int lengthA = commandLength(a);
+    int lengthB = commandLength(b);
+    int length = Math.min(lengthA, lengthB);
+    for (int i = 0; i < length; i++)
+    {
+      int diff = normalize(a.charAt(i)) - normalize(b.charAt(i));
+      if (diff != 0)
+        return diff;
+    }
+    return lengthA - lengthB;
+  };
+
+  static
+  {
+    // Tabellen der WollMux-Dispatches schon beim Laden erzeugen.
+    for (Class<?> c : Arrays.asList(Dispatch.class, NotifyingDispatch.class,
+        DocumentDispatch.class, DocumentNotifyingDispatch.class))
+      TABLES.get(c);
+  }
+
+  /**
+   * dispatch_name(String, PropertyValue[])-Methoden.
+   */
+  private final SortedMap<String, MethodHandle> dispatchMethods;
+
+  /**
+   * dispatch_name(String, PropertyValue[], XDispatchResultListener)-Methoden.
+   */
+  private final SortedMap<String, MethodHandle> notifyingDispatchMethods;
+
+  /**
+   * status_name()-Methoden.
+   */
+  private final SortedMap<String, MethodHandle> statusMethods;
+
+  private DispatchRoutingTable(Class<?> type)
+  {
+    TreeMap<String, MethodHandle> dispatch = new TreeMap<>(COMMAND_ORDER);
+    TreeMap<String, MethodHandle> notifying = new TreeMap<>(COMMAND_ORDER);
+    TreeMap<String, MethodHandle> status = new TreeMap<>(COMMAND_ORDER);
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    for (Method m : type.getDeclaredMethods())
+    {
+      if (Modifier.isStatic(m.getModifiers()))
+        continue;
+      Class<?>[] params = m.getParameterTypes();
+      try
+      {
+        if (m.getName().startsWith(DISPATCH_PREFIX))
+        {
+          String command = m.getName().substring(DISPATCH_PREFIX.length());
+          if (Arrays.equals(params,
+              new Class<?>[] { String.class, PropertyValue[].class }))
+            dispatch.put(command, lookup.unreflect(m));
+          else if (Arrays.equals(params, new Class<?>[] { String.class,
+              PropertyValue[].class, XDispatchResultListener.class }))
+            notifying.put(command, lookup.unreflect(m));
+        } else if (m.getName().startsWith(STATUS_PREFIX) && params.length == 0
+            && m.getReturnType() == boolean.class)
+        {
+          status.put(m.getName().substring(STATUS_PREFIX.length()),
+              lookup.unreflect(m));
+        }
+      } catch (IllegalAccessException e)
+      {
+        LOGGER.error("", e);
+      }
+    }
+
+    dispatchMethods = Collections.unmodifiableSortedMap(dispatch);
+    notifyingDispatchMethods = Collections.unmodifiableSortedMap(notifying);
+    statusMethods = Collections.unmodifiableSortedMap(status);
+  }
+
+  /**
+   * Liefert die Tabelle der in type deklarierten Methoden.
+   */
+  static DispatchRoutingTable of(Class<?> type)
+  {
+    return TABLES.get(type);
+  }
+
+  /**
+   * Liefert true, wenn die Klasse eine Methode dispatch_name(String,
+   * PropertyValue[]) für url deklariert.
+   */
+  boolean canDispatch(URL url)
+  {
+    return getDispatchMethod(url) != null;
+  }
+
+  /**
+   * Liefert die Methode dispatch_name(String, PropertyValue[]) für url oder null.
+   */
+  MethodHandle getDispatchMethod(URL url)
+  {
+    return url.Complete == null ? null : dispatchMethods.get(url.Complete);
+  }
+
+  /**
+   * Liefert die Methode dispatch_name(String, PropertyValue[],
+   * XDispatchResultListener) für url oder null.
+   */
+  MethodHandle getNotifyingDispatchMethod(URL url)
+  {
+    return url.Complete == null ? null : notifyingDispatchMethods.get(url.Complete);
+  }
+
+  /**
+   * Liefert die Methode status_name() für url oder null.
+   */
+  MethodHandle getStatusMethod(URL url)
+  {
+    return url.Complete == null ? null : statusMethods.get(url.Complete);
+  }
+
+  /**
+   * Länge des Kommandos ohne das Argument nach '#'.
+   */
+  private static int commandLength(String s)
+  {
+    int idx = s.indexOf('#');
+    return idx < 0 ? s.length() : idx;
+  }
+
+  /**
+   * Entspricht replaceAll("\\W", "_").toLowerCase() für ein einzelnes Zeichen.
+   */
+  private static char normalize(char c)
+  {
+    if (c >= 'A' && c <= 'Z')
+      return (char) (c - 'A' + 'a');
+    if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_')
+      return c;
+    return '_';
+  }
+}
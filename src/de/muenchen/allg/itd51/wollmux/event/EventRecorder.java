@@ -0,0 +1,237 @@
+package de.muenchen.allg.itd51.wollmux.event;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.star.frame.XModel;
+import com.sun.star.text.XTextDocument;
+import com.sun.star.uno.UnoRuntime;
+
+import de.muenchen.allg.itd51.wollmux.HashableComponent;
+import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
+import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
+import de.muenchen.allg.itd51.wollmux.core.parser.NodeNotFoundException;
+import de.muenchen.allg.itd51.wollmux.core.util.L;
+import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
+import de.muenchen.allg.itd51.wollmux.event.handlers.BasicEvent;
+import de.muenchen.allg.itd51.wollmux.event.handlers.OnTextDocumentClosed;
+import de.muenchen.allg.itd51.wollmux.event.handlers.WollMuxEvent;
+
+/**
+ * Zeichnet die an den {@link WollMuxEventHandler} übergebenen Events in eine Datei
+ * auf, damit Abläufe aus dem Produktivbetrieb mit {@link EventReplay}
+ * nachgestellt werden können. Die Aufzeichnung ist nur aktiv, wenn in der
+ * wollmux.conf EVENT_RECORDING "datei" gesetzt ist. Relative Pfade beziehen sich
+ * auf das WollMux-Verzeichnis.
+ *
+ * Jedes Event wird als eine Zeile im JSON-Format geschrieben. Sie enthält eine
+ * laufende Nummer, die Millisekunden seit Beginn der Aufzeichnung, den Typ des
+ * Events, das Dokument (als Nummer, beim ersten Auftreten auch mit URL) und die
+ * Felder des Events. Einfache Werte werden mit ihrem Wert aufgezeichnet, Dokumente
+ * und TextDocumentController über die Nummer des Dokuments, alle anderen Objekte
+ * nur mit ihrem Typ.
+ */
+public class EventRecorder
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(EventRecorder.class);
+
+  /**
+   * Der Schlüssel in der wollmux.conf, der die Aufzeichnung einschaltet.
+   */
+  public static final String CONFIG_KEY = "EVENT_RECORDING";
+
+  private static EventRecorder instance;
+
+  private static boolean initialized = false;
+
+  /**
+   * Schreibt die Zeilen, damit die Aufzeichnung die Event-Bearbeitung nicht
+   * verzögert.
+   */
+  private final ExecutorService writerThread = Executors
+      .newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("WollMux Event Recorder").setDaemon(true).build());
+
+  private final Writer out;
+
+  private final long startTime = System.currentTimeMillis();
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final AtomicInteger documentCount = new AtomicInteger();
+
+  /**
+   * Die Nummern der aufgezeichneten Dokumente. Der Eintrag eines Dokuments wird
+   * mit seinem OnTextDocumentClosed entfernt.
+   */
+  private final ConcurrentHashMap<HashableComponent, Integer> documentIds = new ConcurrentHashMap<>();
+
+  private EventRecorder(File file) throws IOException
+  {
+    out = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    LOGGER.info(L.m("Zeichne WollMux-Events in der Datei %1 auf.", file));
+  }
+
+  /**
+   * Liefert den EventRecorder oder null, wenn die Aufzeichnung nicht eingeschaltet
+   * ist.
+   */
+  public static synchronized EventRecorder getInstance()
+  {
+    if (!initialized)
+    {
+      initialized = true;
+      File file = getRecordingFile(WollMuxFiles.getWollmuxConf());
+      if (file != null)
+      {
+        try
+        {
+          instance = new EventRecorder(file);
+        } catch (IOException e)
+        {
+          LOGGER.error(L.m("Die Datei %1 kann nicht geschrieben werden.", file), e);
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Zeichnet das Event event auf.
+   */
+  public void record(WollMuxEvent event)
+  {
+    JsonObject record = new JsonObject();
+    record.addProperty("seq", sequence.incrementAndGet());
+    record.addProperty("time", System.currentTimeMillis() - startTime);
+    record.addProperty("type", event.getClass().getSimpleName());
+    XTextDocument doc = event.getDocument();
+    if (doc != null)
+      record.add("document", toDocumentRef(doc));
+
+    JsonArray args = new JsonArray();
+    for (Class<?> c = event.getClass(); c != null && c != BasicEvent.class
+        && c != Object.class; c = c.getSuperclass())
+    {
+      for (Field field : c.getDeclaredFields())
+      {
+        if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+          continue;
+        args.add(toArgument(event, field));
+      }
+    }
+    record.add("args", args);
+
+    if (doc != null && event instanceof OnTextDocumentClosed)
+      documentIds.remove(new HashableComponent(doc));
+
+    writerThread.execute(() -> {
+      try
+      {
+        out.write(record.toString());
+        out.write('\n');
+        out.flush();
+      } catch (IOException e)
+      {
+        LOGGER.error("", e);
+      }
+    });
+  }
+
+  private JsonObject toArgument(WollMuxEvent event, Field field)
+  {
+    JsonObject arg = new JsonObject();
+    arg.addProperty("name", field.getName());
+    arg.addProperty("type", field.getType().getName());
+    try
+    {
+      field.setAccessible(true);
+      Object value = field.get(event);
+      if (value == null)
+        arg.add("value", null);
+      else if (value instanceof String || value instanceof Number
+          || value instanceof Boolean || value instanceof Character
+          || value instanceof Enum)
+        arg.addProperty("value", value.toString());
+      else if (value instanceof TextDocumentController)
+        arg.add("document",
+            toDocumentRef(((TextDocumentController) value).getModel().doc));
+      else if (field.getType().getName().startsWith("com.sun.star."))
+      {
+        XTextDocument doc = UnoRuntime.queryInterface(XTextDocument.class, value);
+        if (doc != null)
+          arg.add("document", toDocumentRef(doc));
+      }
+    } catch (Exception e)
+    {
+      LOGGER.trace("", e);
+    }
+    return arg;
+  }
+
+  /**
+   * Liefert die Referenz auf das Dokument doc. Beim ersten Auftreten des Dokuments
+   * enthält sie auch die URL, unter der das Dokument beim Abspielen geladen werden
+   * kann.
+   */
+  private JsonObject toDocumentRef(XTextDocument doc)
+  {
+    JsonObject ref = new JsonObject();
+    boolean[] added = new boolean[] { false };
+    int id = documentIds.computeIfAbsent(new HashableComponent(doc), key -> {
+      added[0] = true;
+      return documentCount.incrementAndGet();
+    });
+    ref.addProperty("id", id);
+    if (added[0])
+    {
+      XModel model = UnoRuntime.queryInterface(XModel.class, doc);
+      if (model != null)
+        ref.addProperty("url", model.getURL());
+    }
+    return ref;
+  }
+
+  private static File getRecordingFile(ConfigThingy conf)
+  {
+    if (conf == null)
+      return null;
+    ConfigThingy value = conf.query(CONFIG_KEY);
+    if (value.count() == 0)
+      return null;
+    try
+    {
+      String path = value.getLastChild().toString();
+      if (path.isEmpty())
+        return null;
+      File file = new File(path);
+      if (!file.isAbsolute())
+        file = new File(WollMuxFiles.getWollMuxDir(), path);
+      return file;
+    } catch (NodeNotFoundException e)
+    {
+      LOGGER.error(L.m("Ungültiger Wert für %1 in der wollmux.conf.", CONFIG_KEY), e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,346 @@
+package de.muenchen.allg.itd51.wollmux.event;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Defaults;
+import com.google.common.primitives.Primitives;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.star.text.XTextDocument;
+import com.sun.star.uno.UnoRuntime;
+
+import de.muenchen.allg.afid.UNO;
+import de.muenchen.allg.itd51.wollmux.comp.WollMux;
+import de.muenchen.allg.itd51.wollmux.core.util.L;
+import de.muenchen.allg.itd51.wollmux.core.util.LogConfig;
+import de.muenchen.allg.itd51.wollmux.document.DocumentManager;
+import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
+import de.muenchen.allg.itd51.wollmux.event.handlers.BasicEvent;
+import de.muenchen.allg.itd51.wollmux.event.handlers.WollMuxEvent;
+
+/**
+ * Spielt eine mit dem {@link EventRecorder} erstellte Aufzeichnung gegen ein
+ * laufendes Office ab und misst, wie lange die Bearbeitung jedes Events dauert.
+ * So können Optimierungen an realen Abläufen überprüft werden.
+ *
+ * Die Events werden nacheinander abgespielt, d.h. das nächste Event wird erst
+ * gestartet, wenn das vorherige vollständig bearbeitet ist. Jedes aufgezeichnete
+ * Dokument wird beim ersten Auftreten unter seiner URL geladen oder, falls es
+ * keine URL hatte, als neues Dokument erzeugt. Die Events werden über ihren
+ * Konstruktor mit den aufgezeichneten Werten erzeugt. Parameter, deren Wert nicht
+ * aufgezeichnet werden kann (z.B. Listener), werden durch Stubs ersetzt, die
+ * nichts tun. Events, die so nicht erzeugt werden können, werden übersprungen.
+ * Events, die Dialoge öffnen, warten wie im Original auf den Benutzer.
+ *
+ * Verwendung: EventReplay &lt;Aufzeichnung&gt; [&lt;Bericht&gt;]. Wie bei
+ * {@link de.muenchen.allg.itd51.wollmux.DebugExternalWollMux} muss das Office
+ * vorher gestartet sein. Ohne Bericht-Datei wird der Bericht auf stdout
+ * ausgegeben.
+ */
+public class EventReplay
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(EventReplay.class);
+
+  private static final String HANDLER_PACKAGE = BasicEvent.class.getPackage()
+      .getName();
+
+  /**
+   * Die geladenen Dokumente zu den aufgezeichneten Dokumentnummern.
+   */
+  private final Map<Integer, XTextDocument> documents = new HashMap<>();
+
+  /**
+   * Anzahl, Summe und Maximum der Bearbeitungszeiten pro Event-Typ.
+   */
+  private final Map<String, long[]> totals = new TreeMap<>();
+
+  private final StringBuilder report = new StringBuilder();
+
+  private int skipped = 0;
+
+  public static void main(String[] args) throws Exception
+  {
+    if (args.length < 1)
+    {
+      System.err.println(L.m("Verwendung: EventReplay <Aufzeichnung> [<Bericht>]"));
+      System.exit(1);
+    }
+
+    LogConfig.init(System.out, Level.INFO);
+    LogConfig.setIgnoreInit(true);
+    UNO.init();
+    new WollMux(UNO.defaultContext);
+
+    EventReplay replay = new EventReplay();
+    replay.replay(new File(args[0]));
+
+    if (args.length > 1)
+    {
+      try (Writer out = new OutputStreamWriter(new FileOutputStream(args[1]),
+          StandardCharsets.UTF_8))
+      {
+        out.write(replay.getReport());
+      }
+    } else
+    {
+      System.out.print(replay.getReport());
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Spielt alle Events der Aufzeichnung recording ab.
+   */
+  public void replay(File recording) throws IOException
+  {
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+        new FileInputStream(recording), StandardCharsets.UTF_8)))
+    {
+      JsonParser parser = new JsonParser();
+      String line;
+      while ((line = in.readLine()) != null)
+      {
+        if (line.trim().isEmpty())
+          continue;
+        replay(parser.parse(line).getAsJsonObject());
+      }
+    }
+  }
+
+  private void replay(JsonObject record)
+  {
+    String type = record.get("type").getAsString();
+    report.append(record.get("seq").getAsLong()).append(" +")
+        .append(record.get("time").getAsLong()).append("ms ").append(type)
+        .append(": ");
+
+    WollMuxEvent event;
+    try
+    {
+      if (record.has("document"))
+        getDocument(record.getAsJsonObject("document"));
+      event = createEvent(type, record.getAsJsonArray("args"));
+    } catch (Exception e)
+    {
+      LOGGER.error(L.m("Event %1 kann nicht erzeugt werden.", type), e);
+      event = null;
+    }
+    if (event == null)
+    {
+      skipped++;
+      report.append("übersprungen\n");
+      return;
+    }
+
+    long start = System.nanoTime();
+    WollMuxEventHandler.getInstance().replay(event).join();
+    long duration = System.nanoTime() - start;
+
+    long[] total = totals.computeIfAbsent(type, t -> new long[3]);
+    total[0]++;
+    total[1] += duration;
+    total[2] = Math.max(total[2], duration);
+    report.append(TimeUnit.NANOSECONDS.toMillis(duration)).append("ms\n");
+  }
+
+  /**
+   * Liefert den Bericht über die bisher abgespielten Events.
+   */
+  public String getReport()
+  {
+    StringBuilder buffy = new StringBuilder(report);
+    buffy.append("Übersprungen: ").append(skipped).append("\n");
+    for (Map.Entry<String, long[]> entry : totals.entrySet())
+    {
+      long[] total = entry.getValue();
+      buffy.append(entry.getKey()).append(": count=").append(total[0])
+          .append(" avg/max=")
+          .append(TimeUnit.NANOSECONDS.toMillis(total[1] / total[0])).append("/")
+          .append(TimeUnit.NANOSECONDS.toMillis(total[2])).append("ms\n");
+    }
+    buffy.append(EventStatistics.getInstance().getReport());
+    return buffy.toString();
+  }
+
+  /**
+   * Erzeugt ein Event des Typs type über den Konstruktor mit den meisten
+   * Parametern, die sich aus den aufgezeichneten Feldern args belegen lassen.
+   *
+   * @return Das Event oder null, wenn es keinen passenden Konstruktor gibt.
+   */
+  private WollMuxEvent createEvent(String type, JsonArray args) throws Exception
+  {
+    Class<?> eventClass;
+    try
+    {
+      eventClass = Class.forName(HANDLER_PACKAGE + "." + type);
+    } catch (ClassNotFoundException e)
+    {
+      return null;
+    }
+    if (!WollMuxEvent.class.isAssignableFrom(eventClass))
+      return null;
+
+    Constructor<?>[] constructors = eventClass.getDeclaredConstructors();
+    Arrays.sort(constructors,
+        Comparator.comparingInt((Constructor<?> c) -> c.getParameterCount()).reversed());
+    for (Constructor<?> constructor : constructors)
+    {
+      Object[] values = bindArguments(constructor.getParameterTypes(), args);
+      if (values != null)
+      {
+        constructor.setAccessible(true);
+        return (WollMuxEvent) constructor.newInstance(values);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Belegt die Parameter params mit den aufgezeichneten Feldern args. Jeder
+   * Parameter erhält das erste noch nicht verwendete Feld gleichen Typs.
+   *
+   * @return Die Werte oder null, wenn nicht alle Parameter belegt werden können.
+   */
+  private Object[] bindArguments(Class<?>[] params, JsonArray args)
+  {
+    boolean[] used = new boolean[args.size()];
+    Object[] values = new Object[params.length];
+    for (int i = 0; i < params.length; i++)
+    {
+      int index = -1;
+      for (int j = 0; j < args.size() && index < 0; j++)
+      {
+        if (!used[j] && params[i].getName().equals(
+            args.get(j).getAsJsonObject().get("type").getAsString()))
+          index = j;
+      }
+
+      if (index >= 0)
+      {
+        used[index] = true;
+        values[i] = toValue(params[i], args.get(index).getAsJsonObject());
+        if (values[i] == null && params[i].isPrimitive())
+          return null;
+      } else if (params[i].isInterface())
+      {
+        values[i] = createStub(params[i]);
+      } else
+      {
+        return null;
+      }
+    }
+    return values;
+  }
+
+  private Object toValue(Class<?> type, JsonObject arg)
+  {
+    if (arg.has("document"))
+    {
+      XTextDocument doc = getDocument(arg.getAsJsonObject("document"));
+      if (type == TextDocumentController.class)
+        return DocumentManager.getTextDocumentController(doc);
+      return UnoRuntime.queryInterface(type, doc);
+    }
+
+    JsonElement value = arg.get("value");
+    if (value == null)
+      return type.isInterface() ? createStub(type) : null;
+    if (value.isJsonNull())
+      return null;
+
+    String str = value.getAsString();
+    Class<?> wrapper = Primitives.wrap(type);
+    try
+    {
+      if (wrapper == String.class)
+        return str;
+      if (wrapper == Character.class)
+        return str.isEmpty() ? null : str.charAt(0);
+      if (type.isEnum())
+        return Arrays.stream(type.getEnumConstants())
+            .filter(c -> ((Enum<?>) c).name().equals(str)).findFirst().orElse(null);
+      if (Number.class.isAssignableFrom(wrapper) || wrapper == Boolean.class)
+        return wrapper.getMethod("valueOf", String.class).invoke(null, str);
+    } catch (ReflectiveOperationException e)
+    {
+      LOGGER.trace("", e);
+    }
+    return null;
+  }
+
+  /**
+   * Liefert das Dokument zur Referenz ref und lädt es beim ersten Zugriff.
+   */
+  private XTextDocument getDocument(JsonObject ref)
+  {
+    return documents.computeIfAbsent(ref.get("id").getAsInt(), id -> {
+      String url = ref.has("url") ? ref.get("url").getAsString() : "";
+      if (!url.isEmpty())
+      {
+        try
+        {
+          XTextDocument doc = UNO
+              .XTextDocument(UNO.loadComponentFromURL(url, false, false));
+          if (doc != null)
+            return doc;
+        } catch (Exception e)
+        {
+          LOGGER.error(L.m("Dokument %1 kann nicht geladen werden.", url), e);
+        }
+      }
+      try
+      {
+        return UNO.XTextDocument(
+            UNO.loadComponentFromURL("private:factory/swriter", false, false));
+      } catch (Exception e)
+      {
+        LOGGER.error("", e);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Erzeugt ein Objekt, das das Interface type implementiert und nichts tut.
+   */
+  private static Object createStub(Class<?> type)
+  {
+    return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+        (proxy, method, methodArgs) -> {
+          switch (method.getName())
+          {
+          case "equals":
+            return proxy == methodArgs[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "toString":
+            return "Stub(" + type.getSimpleName() + ")";
+          default:
+            return Defaults.defaultValue(method.getReturnType());
+          }
+        });
+  }
+}
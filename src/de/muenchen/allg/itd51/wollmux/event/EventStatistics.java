@@ -0,0 +1,354 @@
+package de.muenchen.allg.itd51.wollmux.event;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.muenchen.allg.itd51.wollmux.event.handlers.WollMuxEvent;
+
+/**
+ * Sammelt Laufzeitinformationen über die Bearbeitung der WollMuxEvents: Anzahl,
+ * Fehler, Wartezeit in der Queue und Ausführungszeit pro Event-Typ, die aktuelle
+ * Länge der Queues und die langsamsten Events der letzten Zeit. Die Informationen
+ * werden periodisch im Log zusammengefasst und sind über
+ * {@link de.muenchen.allg.itd51.wollmux.WollMuxFiles#dumpInfo()} abrufbar.
+ */
+public class EventStatistics
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(EventStatistics.class);
+
+  /**
+   * Die oberen Grenzen (in Millisekunden) der Klassen des Histogramms der
+   * Ausführungszeiten. Die letzte Klasse enthält alle längeren Ausführungen.
+   */
+  private static final long[] HISTOGRAM_LIMITS = { 10, 100, 1000, 10000 };
+
+  /**
+   * Anzahl der langsamsten Events, die gemerkt werden.
+   */
+  private static final int SLOWEST_EVENTS = 10;
+
+  /**
+   * Zeitraum, in dem die langsamsten Events gemerkt werden.
+   */
+  private static final long SLOWEST_EVENTS_WINDOW = TimeUnit.MINUTES.toMillis(30);
+
+  /**
+   * Abstand der Zusammenfassungen im Log.
+   */
+  private static final long SUMMARY_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+  private static EventStatistics instance;
+
+  /**
+   * Die Statistiken pro Event-Typ, sortiert nach Name.
+   */
+  private final Map<String, EventTypeStatistics> statistics = new TreeMap<>();
+
+  /**
+   * Die langsamsten Events im Zeitraum {@link #SLOWEST_EVENTS_WINDOW}, absteigend
+   * nach Ausführungszeit sortiert.
+   */
+  private final List<SlowEvent> slowestEvents = new ArrayList<>();
+
+  /**
+   * Anzahl der Events, die in den Queues auf ihre Bearbeitung warten.
+   */
+  private final AtomicInteger queueDepth = new AtomicInteger();
+
+  private int maxQueueDepth = 0;
+
+  /**
+   * Anzahl der geschriebenen Formularfelder aller Dokumente.
+   */
+  private final AtomicLong formFieldWrites = new AtomicLong();
+
+  /**
+   * Anzahl der übersprungenen Schreibzugriffe auf Formularfelder aller Dokumente.
+   */
+  private final AtomicLong skippedFormFieldWrites = new AtomicLong();
+
+  /**
+   * Anzahl der seit der letzten Zusammenfassung bearbeiteten Events.
+   */
+  private long processedSinceSummary = 0;
+
+  private EventStatistics()
+  {
+    Timer timer = new Timer("WollMux Event Statistics", true);
+    timer.schedule(new TimerTask()
+    {
+      @Override
+      public void run()
+      {
+        logSummary();
+      }
+    }, SUMMARY_INTERVAL, SUMMARY_INTERVAL);
+  }
+
+  public static synchronized EventStatistics getInstance()
+  {
+    if (instance == null)
+    {
+      instance = new EventStatistics();
+    }
+    return instance;
+  }
+
+  /**
+   * Wird aufgerufen, wenn ein Event in eine Queue gestellt wurde.
+   */
+  public void eventQueued()
+  {
+    int depth = queueDepth.incrementAndGet();
+    synchronized (this)
+    {
+      maxQueueDepth = Math.max(maxQueueDepth, depth);
+    }
+  }
+
+  /**
+   * Wird aufgerufen, wenn ein Event aus der Queue genommen wurde.
+   */
+  public void eventDequeued()
+  {
+    queueDepth.decrementAndGet();
+  }
+
+  /**
+   * Erfasst die Bearbeitung eines Events.
+   *
+   * @param event
+   *          Das bearbeitete Event.
+   * @param waitNanos
+   *          Die Zeit zwischen Erzeugung und Start der Bearbeitung.
+   * @param executionNanos
+   *          Die Dauer der Bearbeitung.
+   * @param failed
+   *          true, wenn bei der Bearbeitung ein Fehler aufgetreten ist.
+   */
+  public void eventProcessed(WollMuxEvent event, long waitNanos,
+      long executionNanos, boolean failed)
+  {
+    record(event.getClass().getSimpleName(), event, waitNanos, executionNanos,
+        failed);
+  }
+
+  /**
+   * Erfasst die Fortsetzung eines Events nach dem Schließen eines Dialogs (siehe
+   * BasicEvent#continueWith). Sie wird unter dem Typ "&lt;Event&gt;.continue"
+   * gezählt, die Zeit bis zum Schließen des Dialogs zählt nicht als Wartezeit.
+   *
+   * @param event
+   *          Das fortgesetzte Event.
+   * @param executionNanos
+   *          Die Dauer der Fortsetzung.
+   * @param failed
+   *          true, wenn bei der Fortsetzung ein Fehler aufgetreten ist.
+   */
+  public void eventContinued(WollMuxEvent event, long executionNanos,
+      boolean failed)
+  {
+    record(event.getClass().getSimpleName() + ".continue", event, 0,
+        executionNanos, failed);
+  }
+
+  /**
+   * Erfasst einen Schreibzugriff auf ein Formularfeld.
+   *
+   * @param skipped
+   *          true, wenn das Feld bereits den Wert enthielt und daher nicht
+   *          geschrieben wurde.
+   */
+  public void formFieldWritten(boolean skipped)
+  {
+    if (skipped)
+      skippedFormFieldWrites.incrementAndGet();
+    else
+      formFieldWrites.incrementAndGet();
+  }
+
+  private void record(String type, WollMuxEvent event, long waitNanos,
+      long executionNanos, boolean failed)
+  {
+    long now = System.currentTimeMillis();
+    synchronized (this)
+    {
+      statistics.computeIfAbsent(type, t -> new EventTypeStatistics())
+          .add(waitNanos, executionNanos, failed);
+      processedSinceSummary++;
+
+      Iterator<SlowEvent> iter = slowestEvents.iterator();
+      while (iter.hasNext())
+      {
+        if (iter.next().time < now - SLOWEST_EVENTS_WINDOW)
+          iter.remove();
+      }
+      if (slowestEvents.size() < SLOWEST_EVENTS
+          || slowestEvents.get(slowestEvents.size() - 1).executionNanos < executionNanos)
+      {
+        slowestEvents.add(new SlowEvent(now, event.toString(), waitNanos, executionNanos));
+        slowestEvents.sort((a, b) -> Long.compare(b.executionNanos, a.executionNanos));
+        if (slowestEvents.size() > SLOWEST_EVENTS)
+          slowestEvents.remove(slowestEvents.size() - 1);
+      }
+    }
+  }
+
+  /**
+   * Schreibt eine einzeilige Zusammenfassung ins Log, falls seit der letzten
+   * Zusammenfassung Events bearbeitet wurden.
+   */
+  private void logSummary()
+  {
+    StringBuilder summary = new StringBuilder();
+    synchronized (this)
+    {
+      if (processedSinceSummary == 0)
+        return;
+      summary.append("WollMux-Events: ").append(processedSinceSummary)
+          .append(" bearbeitet, Queue aktuell ").append(queueDepth.get())
+          .append(" (max. ").append(maxQueueDepth).append(")");
+      if (!slowestEvents.isEmpty())
+      {
+        SlowEvent slowest = slowestEvents.get(0);
+        summary.append(", langsamstes Event ").append(slowest.description)
+            .append(" mit ").append(toMillis(slowest.executionNanos)).append("ms");
+      }
+      processedSinceSummary = 0;
+    }
+    LOGGER.info(summary.toString());
+  }
+
+  /**
+   * Liefert einen ausführlichen, mehrzeiligen Bericht über die Event-Bearbeitung.
+   */
+  public synchronized String getReport()
+  {
+    StringBuilder report = new StringBuilder();
+    report.append("Queue depth: ").append(queueDepth.get()).append(" (max. ")
+        .append(maxQueueDepth).append(")\n");
+    report.append("Histogram limits (ms): ");
+    for (long limit : HISTOGRAM_LIMITS)
+      report.append("<").append(limit).append(" ");
+    report.append(">=").append(HISTOGRAM_LIMITS[HISTOGRAM_LIMITS.length - 1])
+        .append("\n");
+    for (Map.Entry<String, EventTypeStatistics> entry : statistics.entrySet())
+    {
+      report.append(entry.getKey()).append(": ").append(entry.getValue())
+          .append("\n");
+    }
+    report.append("Slowest events (last ")
+        .append(TimeUnit.MILLISECONDS.toMinutes(SLOWEST_EVENTS_WINDOW))
+        .append(" minutes):\n");
+    for (SlowEvent slow : slowestEvents)
+    {
+      report.append("  ").append(slow).append("\n");
+    }
+    report.append("Form field writes: ").append(formFieldWrites.get())
+        .append(" (skipped ").append(skippedFormFieldWrites.get()).append(")\n");
+    return report.toString();
+  }
+
+  private static long toMillis(long nanos)
+  {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  /**
+   * Die Statistik eines Event-Typs.
+   */
+  private static class EventTypeStatistics
+  {
+    private long count;
+
+    private long failures;
+
+    private long totalWaitNanos;
+
+    private long maxWaitNanos;
+
+    private long totalExecutionNanos;
+
+    private long maxExecutionNanos;
+
+    private long[] histogram = new long[HISTOGRAM_LIMITS.length + 1];
+
+    void add(long waitNanos, long executionNanos, boolean failed)
+    {
+      count++;
+      if (failed)
+        failures++;
+      totalWaitNanos += waitNanos;
+      maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+      totalExecutionNanos += executionNanos;
+      maxExecutionNanos = Math.max(maxExecutionNanos, executionNanos);
+
+      long millis = toMillis(executionNanos);
+      int bucket = 0;
+      while (bucket < HISTOGRAM_LIMITS.length && millis >= HISTOGRAM_LIMITS[bucket])
+        bucket++;
+      histogram[bucket]++;
+    }
+
+    @Override
+    public String toString()
+    {
+      StringBuilder buffy = new StringBuilder();
+      buffy.append("count=").append(count).append(" failures=").append(failures)
+          .append(" wait avg/max=").append(toMillis(totalWaitNanos / count))
+          .append("/").append(toMillis(maxWaitNanos)).append("ms")
+          .append(" execution avg/max=")
+          .append(toMillis(totalExecutionNanos / count)).append("/")
+          .append(toMillis(maxExecutionNanos)).append("ms histogram=");
+      for (int i = 0; i < histogram.length; i++)
+      {
+        if (i > 0)
+          buffy.append("/");
+        buffy.append(histogram[i]);
+      }
+      return buffy.toString();
+    }
+  }
+
+  /**
+   * Ein langsames Event.
+   */
+  private static class SlowEvent
+  {
+    private final long time;
+
+    private final String description;
+
+    private final long waitNanos;
+
+    private final long executionNanos;
+
+    SlowEvent(long time, String description, long waitNanos, long executionNanos)
+    {
+      this.time = time;
+      this.description = description;
+      this.waitNanos = waitNanos;
+      this.executionNanos = executionNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+      return description + ": execution=" + toMillis(executionNanos)
+          + "ms wait=" + toMillis(waitNanos) + "ms at " + new Date(time);
+    }
+  }
+}
@@ -1,6 +1,6 @@
 package de.muenchen.allg.itd51.wollmux.event;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +10,8 @@ import com.sun.star.frame.XDispatchResultListener;
 import com.sun.star.frame.XNotifyingDispatch;
 import com.sun.star.util.URL;
 
+import de.muenchen.allg.itd51.wollmux.core.util.L;
+
 /**
  * Implementiert XNotifyingDispatch und kann alle Dispatch-URLs behandeln, die kein
  * DocumentModel erfordern. Nähere Infos zur Funktionsweise siehe
@@ -32,22 +34,24 @@ public class NotifyingDispatch extends BaseDispatch implements XNotifyingDispatc
 
     String arg = getMethodArgument(url);
 
-    String methodName = getDispatchMethodName(url);
+    DispatchRoutingTable table = DispatchRoutingTable.of(this.getClass());
+    MethodHandle method = listener == null ? table.getDispatchMethod(url)
+        : table.getNotifyingDispatchMethod(url);
+    if (method == null)
+    {
+      LOGGER.error(L.m("Keine Methode %1 in %2", getDispatchMethodName(url),
+          this.getClass().getName()));
+      return;
+    }
 
     try
     {
-      Class<? extends NotifyingDispatch> myClass = this.getClass();
       if (listener == null)
       {
-        Method method =
-          myClass.getDeclaredMethod(methodName, String.class, PropertyValue[].class);
         method.invoke(this, arg, props);
       }
       else
       {
-        Method method =
-          myClass.getDeclaredMethod(methodName, String.class, PropertyValue[].class,
-            XDispatchResultListener.class);
         method.invoke(this, arg, props, listener);
       }
     }
@@ -0,0 +1,300 @@
+package de.muenchen.allg.itd51.wollmux.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.star.text.XTextDocument;
+
+import de.muenchen.allg.itd51.wollmux.HashableComponent;
+import de.muenchen.allg.itd51.wollmux.event.handlers.WollMuxEvent;
+
+/**
+ * Führt WollMuxEvents asynchron aus. Für jedes Dokument gibt es eine eigene Queue,
+ * in der die Events des Dokuments in der Reihenfolge ihres Eintreffens
+ * nacheinander abgearbeitet werden. Events verschiedener Dokumente werden
+ * parallel abgearbeitet. Dokumentunabhängige Events (
+ * {@link WollMuxEvent#getDocument()} liefert null) werden in einer globalen Queue
+ * abgearbeitet.
+ *
+ * Ein dokumentbezogenes Event wird erst gestartet, wenn alle vorher erzeugten
+ * globalen Events abgearbeitet sind. Damit ist z.B. sichergestellt, dass
+ * OnInitialize vor der Bearbeitung des ersten Dokuments abgeschlossen ist.
+ * Umgekehrt wartet ein globales Event, bis die vorher erzeugten Events aller
+ * Dokumente abgearbeitet sind. Globale Events laufen damit wie bisher nie
+ * gleichzeitig mit anderen Events, so dass der gemeinsam genutzte Zustand (z.B.
+ * Absenderdaten, globale Funktionen und die wollmux.conf) nur von
+ * dokumentbezogenen Events parallel gelesen wird. Events, die das Ende der
+ * Bearbeitung eines Dokuments melden (z.B. OnSetFormValueFinished), müssen in
+ * der Queue dieses Dokuments abgearbeitet werden.
+ *
+ * Events mit einem {@link WollMuxEvent#getCoalescingKey()} werden zusammengefasst:
+ * Solange ein solches Event noch wartet, ersetzt ein neueres Event mit gleichem
+ * Schlüssel das ältere (z.B. schnell aufeinanderfolgende Änderungen desselben
+ * Formularfeldes).
+ *
+ * Hintergrund-Events ({@link WollMuxEvent#isBackground()}) warten wie
+ * dokumentbezogene Events auf die vorher erzeugten globalen Events, werden aber
+ * in einer eigenen Queue auf einem Thread mit niedriger Priorität abgearbeitet.
+ * Kein anderes Event wartet auf sie, auch kein globales. Sie dürfen den gemeinsam
+ * genutzten Zustand daher wie dokumentbezogene Events nur lesen.
+ *
+ * Events, die einen nicht modalen Dialog öffnen, blockieren keinen Thread, bis der
+ * Dialog geschlossen wird. Die Queue ihres Dokuments wird erst mit
+ * {@link WollMuxEvent#getCompletion()} fortgesetzt.
+ */
+public class WollMuxEventExecutor
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(WollMuxEventExecutor.class);
+
+  /**
+   * Ist true auf allen Threads, auf denen Events abgearbeitet werden.
+   */
+  private static final ThreadLocal<Boolean> EVENT_THREAD = ThreadLocal
+      .withInitial(() -> Boolean.FALSE);
+
+  /**
+   * Erzeugt Threads, auf denen {@link #EVENT_THREAD} gesetzt ist.
+   */
+  private static final ThreadFactory EVENT_THREAD_FACTORY = r -> Executors
+      .defaultThreadFactory().newThread(() -> {
+        EVENT_THREAD.set(Boolean.TRUE);
+        r.run();
+      });
+
+  /**
+   * Die Threads, auf denen die Queues abgearbeitet werden.
+   */
+  private final ExecutorService threads = Executors
+      .newCachedThreadPool(new ThreadFactoryBuilder()
+          .setNameFormat("WollMux Event Processor %d").setDaemon(true)
+          .setThreadFactory(EVENT_THREAD_FACTORY).build());
+
+  /**
+   * Der Thread für die Hintergrund-Events.
+   */
+  private final ExecutorService backgroundThread = Executors
+      .newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("WollMux Background Event Processor").setDaemon(true)
+          .setPriority(Thread.MIN_PRIORITY)
+          .setThreadFactory(EVENT_THREAD_FACTORY).build());
+
+  /**
+   * Die Queue für dokumentunabhängige Events.
+   */
+  private final EventQueue globalQueue = new EventQueue(threads);
+
+  /**
+   * Die Queue für Hintergrund-Events.
+   */
+  private final EventQueue backgroundQueue = new EventQueue(backgroundThread);
+
+  /**
+   * Die Queues der Dokumente.
+   */
+  private final ConcurrentHashMap<HashableComponent, EventQueue> documentQueues = new ConcurrentHashMap<>();
+
+  /**
+   * Die noch nicht gestarteten Events, die zusammengefasst werden können.
+   */
+  private final ConcurrentHashMap<Object, WollMuxEvent> pendingEvents = new ConcurrentHashMap<>();
+
+  /**
+   * Stellt das Event event in die Queue seines Dokuments bzw. in die globale
+   * Queue. Die eigentliche Bearbeitung erfolgt durch dispatcher.
+   *
+   * @param event
+   *          Das auszuführende Event.
+   * @param dispatcher
+   *          Führt das Event aus (z.B. durch Verteilen an die Listener).
+   * @return Ein Future, das fertig wird, wenn das Event vollständig bearbeitet
+   *         ist.
+   */
+  public CompletableFuture<Void> execute(WollMuxEvent event, Runnable dispatcher)
+  {
+    Runnable task = dispatcher;
+    Object coalescingKey = event.getCoalescingKey();
+    if (coalescingKey != null)
+    {
+      WollMuxEvent older = pendingEvents.put(coalescingKey, event);
+      if (older != null)
+      {
+        event.coalesce(older);
+      }
+      task = () -> {
+        if (pendingEvents.remove(coalescingKey, event))
+        {
+          dispatcher.run();
+        } else
+        {
+          LOGGER.trace("{} wurde durch ein neueres Event ersetzt.", event);
+        }
+      };
+    }
+
+    XTextDocument doc = event.getDocument();
+    if (doc == null && event.isBackground())
+    {
+      return backgroundQueue.submit(event, task, globalQueue.getTail());
+    } else if (doc == null)
+    {
+      return globalQueue.submit(event, task, getDocumentTails());
+    } else
+    {
+      CompletableFuture<Void> globalTail = globalQueue.getTail();
+      Runnable dispatch = task;
+      // Das Einstellen erfolgt innerhalb von compute, damit removeDocument die
+      // Queue nicht gleichzeitig entfernen kann.
+      List<CompletableFuture<Void>> result = new ArrayList<>(1);
+      documentQueues.compute(new HashableComponent(doc), (key, queue) -> {
+        EventQueue q = queue != null ? queue : new EventQueue(threads);
+        result.add(q.submit(event, dispatch, globalTail));
+        return q;
+      });
+      return result.get(0);
+    }
+  }
+
+  /**
+   * Liefert ein Future, das fertig wird, wenn alle bisher eingestellten Events
+   * der Dokumente abgearbeitet sind, oder null, wenn keines mehr aussteht.
+   */
+  private CompletableFuture<Void> getDocumentTails()
+  {
+    List<CompletableFuture<Void>> tails = new ArrayList<>();
+    for (EventQueue queue : documentQueues.values())
+    {
+      CompletableFuture<Void> tail = queue.getTail();
+      if (!tail.isDone())
+        tails.add(tail);
+    }
+    if (tails.isEmpty())
+      return null;
+    return CompletableFuture.allOf(tails.toArray(new CompletableFuture[0]));
+  }
+
+  /**
+   * Liefert die Threads, auf denen die Events abgearbeitet werden.
+   */
+  public Executor getThreads()
+  {
+    return threads;
+  }
+
+  /**
+   * Liefert true, wenn der aufrufende Thread Events abarbeitet. Ein solcher Thread
+   * darf nicht auf andere Events warten, da diese sonst unter Umständen nie
+   * ausgeführt werden.
+   */
+  public boolean isEventThread()
+  {
+    return EVENT_THREAD.get();
+  }
+
+  /**
+   * Entfernt die Queue des Dokuments doc, sobald alle eingestellten Events
+   * abgearbeitet sind. Sollte aufgerufen werden, nachdem das letzte Event des
+   * Dokuments (OnTextDocumentClosed) eingestellt wurde. Events, die bis dahin noch
+   * für das Dokument eintreffen, werden weiterhin hinter den bereits eingestellten
+   * Events abgearbeitet.
+   *
+   * @param doc
+   *          Das geschlossene Dokument.
+   */
+  public void removeDocument(XTextDocument doc)
+  {
+    if (doc != null)
+    {
+      HashableComponent key = new HashableComponent(doc);
+      EventQueue queue = documentQueues.get(key);
+      if (queue != null)
+      {
+        removeWhenIdle(key, queue);
+      }
+    }
+  }
+
+  /**
+   * Entfernt queue, wenn ihr letztes Event abgearbeitet ist und seitdem kein
+   * weiteres eingestellt wurde. Andernfalls wird auf das neue letzte Event
+   * gewartet.
+   */
+  private void removeWhenIdle(HashableComponent key, EventQueue queue)
+  {
+    CompletableFuture<Void> tail = queue.getTail();
+    tail.thenRun(() -> {
+      EventQueue remaining = documentQueues.computeIfPresent(key,
+          (k, q) -> q == queue && q.getTail() == tail ? null : q);
+      if (remaining == queue)
+      {
+        removeWhenIdle(key, queue);
+      }
+    });
+  }
+
+  /**
+   * Eine Queue, deren Events strikt nacheinander abgearbeitet werden.
+   */
+  private class EventQueue
+  {
+    /**
+     * Die Threads, auf denen die Events dieser Queue abgearbeitet werden.
+     */
+    private final Executor executor;
+
+    /**
+     * Wird fertig, wenn das zuletzt eingestellte Event abgearbeitet ist.
+     */
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+    EventQueue(Executor executor)
+    {
+      this.executor = executor;
+    }
+
+    synchronized CompletableFuture<Void> getTail()
+    {
+      return tail;
+    }
+
+    /**
+     * Stellt das Event ein. Es wird ausgeführt, wenn alle vorherigen Events der
+     * Queue und ggf. after abgearbeitet sind. Wartet das Event auf das Schließen
+     * eines Dialogs (siehe {@link WollMuxEvent#getCompletion()}), so wartet nur
+     * diese Queue, die Threads bleiben für andere Queues frei.
+     */
+    synchronized CompletableFuture<Void> submit(WollMuxEvent event,
+        Runnable dispatcher, CompletableFuture<Void> after)
+    {
+      CompletableFuture<Void> previous = tail;
+      if (after != null && !after.isDone())
+      {
+        previous = CompletableFuture.allOf(previous, after);
+      }
+      EventStatistics.getInstance().eventQueued();
+      tail = previous.thenComposeAsync(v -> {
+        EventStatistics.getInstance().eventDequeued();
+        try
+        {
+          dispatcher.run();
+        } catch (Throwable t)
+        {
+          LOGGER.error("Fehler bei der Bearbeitung von {}", event, t);
+          return CompletableFuture.completedFuture(null);
+        }
+        return event.getCompletion();
+      }, executor);
+      return tail;
+    }
+  }
+}
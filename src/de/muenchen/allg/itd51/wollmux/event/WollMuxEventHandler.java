@@ -3,6 +3,9 @@ package de.muenchen.allg.itd51.wollmux.event;
 import java.awt.event.ActionListener;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +38,7 @@ import de.muenchen.allg.itd51.wollmux.event.handlers.OnCloseTextDocument;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnCollectNonWollMuxFormFieldsViaPrintModel;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnDumpInfo;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnExecutePrintFunction;
+import de.muenchen.allg.itd51.wollmux.event.handlers.OnFillTemplatePool;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnFocusFormField;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnFormControllerInitCompleted;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnFormValueChanged;
@@ -63,6 +67,7 @@ import de.muenchen.allg.itd51.wollmux.event.handlers.OnSaveTempAndOpenExt;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnSeriendruck;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnSetFormValue;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnSetFormValueFinished;
+import de.muenchen.allg.itd51.wollmux.event.handlers.OnSetFormValues;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnSetInsertValues;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnSetPrintBlocksPropsViaPrintModel;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnSetSender;
@@ -70,6 +75,7 @@ import de.muenchen.allg.itd51.wollmux.event.handlers.OnSetVisibleState;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnSetWindowVisible;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnShowDialogAbsenderAuswaehlen;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnShowDialogPersoenlicheAbsenderlisteVerwalten;
+import de.muenchen.allg.itd51.wollmux.event.handlers.OnStoreFormFieldValues;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnTextDocumentClosed;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnTextbausteinEinfuegen;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnUpdateInputFields;
@@ -89,6 +95,11 @@ public class WollMuxEventHandler
   private static WollMuxEventHandler instance;
   private EventBus eventBus;
 
+  /**
+   * Arbeitet die Events asynchron in einer Queue pro Dokument ab.
+   */
+  private WollMuxEventExecutor executor;
+
   private InitEventListener initEventListener;
 
   private CheckInstallation checkInstallationListener;
@@ -114,6 +125,7 @@ public class WollMuxEventHandler
   private WollMuxEventHandler()
   {
     eventBus = new EventBus();
+    executor = new WollMuxEventExecutor();
     initEventListener = new InitEventListener();
     eventBus.register(initEventListener);
     checkInstallationListener = new CheckInstallation();
@@ -144,7 +156,8 @@ public class WollMuxEventHandler
   }
 
   /**
-   * Stellt das WollMuxEvent event in die EventQueue des EventProcessors.
+   * Stellt das WollMuxEvent event in die EventQueue seines Dokuments bzw. in die
+   * globale EventQueue, falls das Event keinem Dokument zugeordnet ist.
    *
    * @param event
    */
@@ -152,10 +165,46 @@ public class WollMuxEventHandler
   {
     if (acceptEvents)
     {
-      eventBus.post(event);
+      EventRecorder recorder = EventRecorder.getInstance();
+      if (recorder != null)
+      {
+        recorder.record(event);
+      }
+      executor.execute(event, () -> eventBus.post(event));
     }
   }
 
+  /**
+   * Stellt ein von {@link EventReplay} erzeugtes Event in die EventQueue. Das
+   * Event wird nicht aufgezeichnet.
+   *
+   * @param event
+   * @return Ein Future, das fertig wird, wenn das Event vollständig bearbeitet
+   *         ist.
+   */
+  CompletableFuture<Void> replay(WollMuxEvent event)
+  {
+    return executor.execute(event, () -> eventBus.post(event));
+  }
+
+  /**
+   * Liefert die Threads, auf denen die Events abgearbeitet werden. Hier laufen
+   * z.B. auch die Fortsetzungen von Events nach dem Schließen eines Dialogs.
+   */
+  public Executor getEventThreads()
+  {
+    return executor.getThreads();
+  }
+
+  /**
+   * Liefert true, wenn der aufrufende Thread Events abarbeitet und daher nicht auf
+   * andere Events warten darf.
+   */
+  public boolean isEventThread()
+  {
+    return executor.isEventThread();
+  }
+
   // *******************************************************************************************
 
   /**
@@ -514,6 +563,16 @@ public class WollMuxEventHandler
     handle(new OnOpenDocument(fragIDs, asTemplate));
   }
 
+  /**
+   * Erzeugt ein neues WollMuxEvent, das das nächste Dokument für den
+   * TemplateWarmPool unsichtbar öffnet, falls der Pool noch nicht voll ist. Das
+   * Event wird im Hintergrund abgearbeitet und hält keine anderen Events auf.
+   */
+  public void handleFillTemplatePool()
+  {
+    handle(new OnFillTemplatePool());
+  }
+
   /**
    * Erzeugt ein neues WollMuxEvent, das den Dialog
    * PersoenlichtAbsenderListe-Verwalten startet.
@@ -556,6 +615,7 @@ public class WollMuxEventHandler
   public void handleTextDocumentClosed(DocumentManager.Info docInfo)
   {
     handle(new OnTextDocumentClosed(docInfo));
+    executor.removeDocument(docInfo.getTextDocument());
   }
 
   /**
@@ -591,6 +651,29 @@ public class WollMuxEventHandler
     handle(new OnSetFormValue(doc, id, value, unlockActionListener));
   }
 
+  /**
+   * Erzeugt ein neues WollMuxEvent, das mehrere Formularwerte auf einmal setzt wie
+   * {@link #handleSetFormValue(XTextDocument, String, String, ActionListener)}.
+   * Die Werte werden erst bei der Ausführung des Events von values abgeholt.
+   *
+   * Das Event wird aus der Implementierung von XWollMuxDocument (siehe
+   * comp.WollMuxDocument) geworfen, wenn dort setFormValue oder updateFormGUI
+   * aufgerufen wird.
+   *
+   * @param doc
+   *          Das Dokument, in dem die Formularwerte gesetzt werden sollen.
+   * @param values
+   *          Liefert die zu setzenden Formularwerte.
+   * @param unlockActionListener
+   *          Wird informiert, wenn alle notwendigen Anpassungen durchgeführt wurden.
+   *          Kann null sein.
+   */
+  public void handleSetFormValues(XTextDocument doc,
+      Supplier<Map<String, String>> values, ActionListener unlockActionListener)
+  {
+    handle(new OnSetFormValues(doc, values, unlockActionListener));
+  }
+
   /**
    * Sammelt alle Formularfelder des Dokuments model auf, die nicht von
    * WollMux-Kommandos umgeben sind, jedoch trotzdem vom WollMux verstanden und
@@ -800,6 +883,19 @@ public class WollMuxEventHandler
     handle(new OnFormValueChanged(documentController, fieldId, newValue));
   }
 
+  /**
+   * Erzeugt ein neues WollMuxEvent, das die geänderten Formularwerte des Dokuments
+   * in die persistenten Daten schreibt.
+   *
+   * @param documentController
+   *          Das Dokument, dessen Formularwerte geschrieben werden sollen.
+   */
+  public void handleStoreFormFieldValues(
+      TextDocumentController documentController)
+  {
+    handle(new OnStoreFormFieldValues(documentController));
+  }
+
   /**
    * Erzeugt ein Event, das die Anzeige des übergebenen Dokuments auf sichtbar oder
    * unsichtbar schaltet. Dabei wird direkt die entsprechende Funktion der UNO-API
@@ -931,12 +1027,16 @@ public class WollMuxEventHandler
    * Das Event wird aus der Implementierung vom OnSetFormValueViaPrintModel.doit()
    * erzeugt, wenn Feldänderungen über die FormGUI laufen.
    *
+   * @param doc
+   *          Das Dokument, dessen Formularwert gesetzt wurde. Das Event wird erst
+   *          nach den bis dahin erzeugten Events dieses Dokuments abgearbeitet.
    * @param unlockActionListener
    *          Der zu informierende unlockActionListener.
    */
-  public void handleSetFormValueFinished(ActionListener unlockActionListener)
+  public void handleSetFormValueFinished(XTextDocument doc,
+      ActionListener unlockActionListener)
   {
-    handle(new OnSetFormValueFinished(unlockActionListener));
+    handle(new OnSetFormValueFinished(doc, unlockActionListener));
   }
 
   /**
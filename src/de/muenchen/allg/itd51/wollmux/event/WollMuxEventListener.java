@@ -1,5 +1,6 @@
 package de.muenchen.allg.itd51.wollmux.event;
 
+import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnAbdruck;
@@ -51,6 +52,11 @@ import de.muenchen.allg.itd51.wollmux.event.handlers.OnTextbausteinEinfuegen;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnUpdateInputFields;
 import de.muenchen.allg.itd51.wollmux.event.handlers.OnZifferEinfuegen;
 
+/**
+ * Verteilt die WollMuxEvents an ihre process-Methode. Die Events verschiedener
+ * Dokumente werden parallel bearbeitet, daher dürfen die Subscriber nicht von
+ * der EventBus synchronisiert werden.
+ */
 public class WollMuxEventListener
 {
 
@@ -59,18 +65,21 @@ public class WollMuxEventListener
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onZifferEinfuegen(OnZifferEinfuegen event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onTextbausteinEinfuegen(OnTextbausteinEinfuegen event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onShowDialogPersoenlicheAbsenderlisteVerwalten(
       OnShowDialogPersoenlicheAbsenderlisteVerwalten event)
   {
@@ -78,6 +87,7 @@ public class WollMuxEventListener
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onShowDialogAbsenderAuswaehlen(
       OnShowDialogAbsenderAuswaehlen event)
   {
@@ -85,48 +95,56 @@ public class WollMuxEventListener
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSetWindowVisible(OnSetWindowVisible event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSetSender(OnSetSender event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSetInsertValues(OnSetInsertValues event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSetFormValueFinished(OnSetFormValueFinished event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSaveTempAndOpenExt(OnSaveTempAndOpenExt event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSaveAs(OnSaveAs event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onReprocessTextDocument(OnReprocessTextDocument event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onRemovePALChangeEventListener(
       OnRemovePALChangeEventListener event)
   {
@@ -134,114 +152,133 @@ public class WollMuxEventListener
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onProcessTextDocument(OnProcessTextDocument event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onPrintPage(OnPrintPage event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onPALChangedNotify(OnPALChangedNotify event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onOpenDocument(OnOpenDocument event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onMarkBlock(OnMarkBlock event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onManagePrintFunction(OnManagePrintFunction event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onKill(OnKill event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onJumpToPlaceholder(OnJumpToPlaceholder event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onJumpToMark(OnJumpToMark event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onFunctionDialog(OnFunctionDialog event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onFormValueChanged(OnFormValueChanged event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onFormularMax4000Show(OnFormularMax4000Show event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onFormularMax4000Returned(OnFormularMax4000Returned event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onFormControllerInitCompleted(OnFormControllerInitCompleted event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onFocusFormField(OnFocusFormField event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onDumpInfo(OnDumpInfo event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onAbdruck(OnAbdruck event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onAddPALChangeEventListener(OnAddPALChangeEventListener event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onButtonZuleitungszeilePressed(
       OnButtonZuleitungszeilePressed event)
   {
@@ -249,24 +286,28 @@ public class WollMuxEventListener
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onCloseAndOpenExt(OnCloseAndOpenExt event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onAddDocumentEventListener(OnAddDocumentEventListener event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onCloseTextDocument(OnCloseTextDocument event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onCollectNonWollMuxFormFieldsViaPrintModel(
       OnCollectNonWollMuxFormFieldsViaPrintModel event)
   {
@@ -274,54 +315,63 @@ public class WollMuxEventListener
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onExecutePrintFunction(OnExecutePrintFunction event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onHandleMailMergeNewReturned(OnHandleMailMergeNewReturned event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onNotifyDocumentEventListener(OnNotifyDocumentEventListener event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onPrint(OnPrint event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onRegisterDispatchInterceptor(OnRegisterDispatchInterceptor event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onRemoveDocumentEventListener(OnRemoveDocumentEventListener event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSeriendruck(OnSeriendruck event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSetFormValue(OnSetFormValue event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSetPrintBlocksPropsViaPrintModel(
       OnSetPrintBlocksPropsViaPrintModel event)
   {
@@ -329,24 +379,28 @@ public class WollMuxEventListener
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onSetVisibleState(OnSetVisibleState event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onTextDocumentClosed(OnTextDocumentClosed event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onAbout(OnAbout event)
   {
     event.process();
   }
 
   @Subscribe
+  @AllowConcurrentEvents
   public void onUpdateInputFields(OnUpdateInputFields event)
   {
     event.process();
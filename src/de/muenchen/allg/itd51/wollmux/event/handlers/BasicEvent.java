@@ -2,6 +2,8 @@ package de.muenchen.allg.itd51.wollmux.event.handlers;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,12 +11,17 @@ import org.slf4j.LoggerFactory;
 import com.sun.star.awt.XWindow;
 import com.sun.star.frame.XFrame;
 import com.sun.star.frame.XFrames;
+import com.sun.star.text.XTextDocument;
 import com.sun.star.uno.RuntimeException;
 
 import de.muenchen.allg.afid.UNO;
+import de.muenchen.allg.itd51.wollmux.MemoryReleasePolicy;
 import de.muenchen.allg.itd51.wollmux.WollMuxFehlerException;
 import de.muenchen.allg.itd51.wollmux.core.util.L;
 import de.muenchen.allg.itd51.wollmux.dialog.InfoDialog;
+import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
+import de.muenchen.allg.itd51.wollmux.event.EventStatistics;
+import de.muenchen.allg.itd51.wollmux.event.WollMuxEventHandler;
 
 /**
  * Dient als Basisklasse für konkrete Event-Implementierungen.
@@ -24,7 +31,51 @@ public abstract class BasicEvent implements WollMuxEvent
 
   private static final Logger LOGGER = LoggerFactory
       .getLogger(BasicEvent.class);
-  private boolean[] lock = new boolean[] { true };
+
+  /**
+   * Zeitpunkt der Erzeugung des Events, aus dem die Wartezeit in der Queue
+   * bestimmt wird.
+   */
+  private final long creationTime = System.nanoTime();
+
+  /**
+   * Wird fertig, wenn die Bearbeitung des Events einschließlich einer evtl. mit
+   * {@link #continueWith(CompletableFuture, Continuation)} angehängten Fortsetzung
+   * abgeschlossen ist.
+   */
+  private volatile CompletableFuture<Void> completion = CompletableFuture
+      .completedFuture(null);
+
+  /**
+   * Das Dokument, in dessen Queue das Event abgearbeitet wird, oder null für die
+   * globale Queue.
+   */
+  private final XTextDocument document;
+
+  /**
+   * Erzeugt ein dokumentunabhängiges Event.
+   */
+  protected BasicEvent()
+  {
+    this((XTextDocument) null);
+  }
+
+  /**
+   * Erzeugt ein Event, das in der Queue des Dokuments document abgearbeitet wird.
+   */
+  protected BasicEvent(XTextDocument document)
+  {
+    this.document = document;
+  }
+
+  /**
+   * Erzeugt ein Event, das in der Queue des Dokuments von documentController
+   * abgearbeitet wird.
+   */
+  protected BasicEvent(TextDocumentController documentController)
+  {
+    this(documentController != null ? documentController.getModel().doc : null);
+  }
 
   /**
    * Diese Method ist für die Ausführung des Events zuständig. Nach der Bearbeitung
@@ -36,9 +87,36 @@ public abstract class BasicEvent implements WollMuxEvent
   public void process()
   {
     LOGGER.debug("Process WollMuxEvent {}", this);
+    long startTime = System.nanoTime();
+    boolean failed = !execute(result -> doit(), null);
+    EventStatistics.getInstance().eventProcessed(this,
+        startTime - creationTime, System.nanoTime() - startTime, failed);
+  }
+
+  @Override
+  public XTextDocument getDocument()
+  {
+    return document;
+  }
+
+  @Override
+  public CompletableFuture<Void> getCompletion()
+  {
+    return completion;
+  }
+
+  /**
+   * Führt step mit dem Parameter result aus und behandelt alle dabei auftretenden
+   * Fehler.
+   *
+   * @return true, wenn step ohne Fehler ausgeführt wurde.
+   */
+  private <T> boolean execute(Continuation<T> step, T result)
+  {
     try
     {
-      doit();
+      step.proceed(result);
+      return true;
     } catch (WollMuxFehlerException e)
     {
       // hier wäre ein showNoConfigInfo möglich - ist aber nicht eindeutig auf no config zurückzuführen
@@ -49,6 +127,7 @@ public abstract class BasicEvent implements WollMuxEvent
     {
       LOGGER.error("", t);
     }
+    return false;
   }
 
   /**
@@ -93,10 +172,13 @@ public abstract class BasicEvent implements WollMuxEvent
    * In der Vergangenheit gab es z.B. sporadische, nicht immer reproduzierbare
    * Abstürze von OOo, die vermutlich in einem fehlerhaften Speichermanagement in
    * der schwer zu durchschauenden Kette JVM->UNO-Proxies->OOo begründet waren.
+   *
+   * Ob der GarbageCollector tatsächlich angestoßen wird, entscheidet die
+   * {@link MemoryReleasePolicy}.
    */
   protected void stabilize()
   {
-    System.gc();
+    MemoryReleasePolicy.getInstance().operationFinished(0);
   }
 
   @Override
@@ -139,76 +221,98 @@ public abstract class BasicEvent implements WollMuxEvent
   }
 
   /**
-   * Setzt einen lock, der in Verbindung mit setUnlock und der
-   * waitForUnlock-Methode verwendet werden kann, um quasi Modalität für nicht
-   * modale Dialoge zu realisieren und setzt alle OOo-Fenster auf enabled==false.
-   * setLock() sollte stets vor dem Aufruf des nicht modalen Dialogs erfolgen, nach
-   * dem Aufruf des nicht modalen Dialogs folgt der Aufruf der
-   * waitForUnlock()-Methode. Der nicht modale Dialog erzeugt bei der Beendigung
-   * ein ActionEvent, das dafür sorgt, dass setUnlock aufgerufen wird.
+   * Setzt die Bearbeitung des Events mit continuation fort, sobald future fertig
+   * ist. Die doit()-Methode kann so z.B. einen nicht modalen Dialog starten und
+   * sofort zurückkehren, statt den Thread bis zum Schließen des Dialogs zu
+   * blockieren. In der Zwischenzeit werden Events anderer Dokumente weiter
+   * bearbeitet, das nächste Event desselben Dokuments wird erst nach der
+   * Fortsetzung gestartet. Wird future mit einer Exception beendet, entfällt die
+   * Fortsetzung. Die Fortsetzung läuft auf den Threads des Event-Handlers und
+   * wird in der {@link EventStatistics} erfasst.
+   *
+   * @param future
+   *          Das Future, auf dessen Ergebnis gewartet wird.
+   * @param continuation
+   *          Der Rest der Bearbeitung, der das Ergebnis von future erhält.
    */
-  protected void setLock()
+  protected <T> void continueWith(CompletableFuture<T> future,
+      Continuation<T> continuation)
   {
-    enableAllOOoWindows(false);
-    synchronized (lock)
-    {
-      lock[0] = true;
-    }
+    completion = future.handleAsync((result, t) -> {
+      if (t == null)
+      {
+        LOGGER.debug("Continue WollMuxEvent {}", this);
+        long startTime = System.nanoTime();
+        boolean failed = !execute(continuation, result);
+        EventStatistics.getInstance().eventContinued(this,
+            System.nanoTime() - startTime, failed);
+      } else
+      {
+        LOGGER.debug("WollMuxEvent {} wird nicht fortgesetzt: {}", this,
+            t.getMessage());
+      }
+      return null;
+    }, WollMuxEventHandler.getInstance().getEventThreads());
   }
 
   /**
-   * Macht einen mit setLock() gesetzten Lock rückgängig, und setzt alle
-   * OOo-Fenster auf enabled==true und bricht damit eine evtl. wartende
-   * waitForUnlock()-Methode ab.
+   * Setzt alle OOo-Fenster auf enabled==false und liefert einen
+   * DialogListener, der einem nicht modalen Dialog übergeben werden kann. So kann
+   * quasi Modalität für nicht modale Dialoge realisiert werden. Der nicht modale
+   * Dialog erzeugt bei der Beendigung ein ActionEvent, das die Fenster wieder
+   * freigibt und {@link DialogListener#getResult()} fertig stellt. Mit
+   * {@link #continueWith(CompletableFuture, Continuation)} kann die Bearbeitung
+   * danach fortgesetzt werden.
    */
-  protected void setUnlock()
+  protected DialogListener lockForDialog()
   {
-    synchronized (lock)
-    {
-      lock[0] = false;
-      lock.notifyAll();
-    }
-    enableAllOOoWindows(true);
+    enableAllOOoWindows(false);
+    return new DialogListener();
   }
 
   /**
-   * Wartet so lange, bis der vorher mit setLock() gesetzt lock mit der Methode
-   * setUnlock() aufgehoben wird. So kann die quasi Modalität nicht modale Dialoge
-   * zu realisiert werden. setLock() sollte stets vor dem Aufruf des nicht modalen
-   * Dialogs erfolgen, nach dem Aufruf des nicht modalen Dialogs folgt der Aufruf
-   * der waitForUnlock()-Methode. Der nicht modale Dialog erzeugt bei der
-   * Beendigung ein ActionEvent, das dafür sorgt, dass setUnlock aufgerufen wird.
+   * Ein Teil der Bearbeitung eines Events, der erst ausgeführt wird, wenn ein
+   * Ergebnis vorliegt.
    */
-  protected void waitForUnlock()
+  @FunctionalInterface
+  protected interface Continuation<T>
   {
-    try
-    {
-      synchronized (lock)
-      {
-        while (lock[0])
-          lock.wait();
-      }
-    } catch (InterruptedException e)
-    {
-    }
+    void proceed(T result) throws WollMuxFehlerException;
   }
 
   /**
-   * Dieser ActionListener kann nicht modalen Dialogen übergeben werden und sorgt
-   * in Verbindung mit den Methoden setLock() und waitForUnlock() dafür, dass quasi
-   * modale Dialoge realisiert werden können.
+   * Dieser ActionListener wird von {@link BasicEvent#lockForDialog()} erzeugt und
+   * gibt beim Beenden des Dialogs alle OOo-Fenster wieder frei.
    */
-  protected UnlockActionListener unlockActionListener = new UnlockActionListener();
-
-  protected class UnlockActionListener implements ActionListener
+  protected static class DialogListener implements ActionListener
   {
-    public ActionEvent actionEvent = null;
+    private final CompletableFuture<ActionEvent> result = new CompletableFuture<>();
 
     @Override
     public void actionPerformed(ActionEvent arg0)
     {
-      actionEvent = arg0;
-      setUnlock();
+      enableAllOOoWindows(true);
+      result.complete(arg0);
+    }
+
+    /**
+     * Gibt alle OOo-Fenster wieder frei, wenn der Dialog nicht gestartet werden
+     * konnte. Eine evtl. Fortsetzung entfällt.
+     */
+    public void abort()
+    {
+      enableAllOOoWindows(true);
+      result.completeExceptionally(
+          new CancellationException(L.m("Dialog wurde nicht gestartet.")));
+    }
+
+    /**
+     * Liefert ein Future, das mit dem ActionEvent fertig wird, mit dem der Dialog
+     * beendet wurde.
+     */
+    public CompletableFuture<ActionEvent> getResult()
+    {
+      return result;
     }
   }
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ public class OnAbdruck extends BasicEvent
 
   public OnAbdruck(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
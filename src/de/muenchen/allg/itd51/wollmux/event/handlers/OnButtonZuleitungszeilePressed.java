@@ -23,6 +23,7 @@ public class OnButtonZuleitungszeilePressed extends BasicEvent
   public OnButtonZuleitungszeilePressed(
       TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
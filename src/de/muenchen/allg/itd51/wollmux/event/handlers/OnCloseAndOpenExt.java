@@ -25,6 +25,7 @@ public class OnCloseAndOpenExt extends BasicEvent
   public OnCloseAndOpenExt(TextDocumentController documentController,
       String ext)
   {
+    super(documentController);
     this.documentController = documentController;
     this.ext = ext;
   }
@@ -15,6 +15,7 @@ public class OnCloseTextDocument extends BasicEvent
 
   public OnCloseTextDocument(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
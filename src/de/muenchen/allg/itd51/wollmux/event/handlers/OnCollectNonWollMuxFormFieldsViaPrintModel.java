@@ -27,6 +27,7 @@ public class OnCollectNonWollMuxFormFieldsViaPrintModel extends BasicEvent
       TextDocumentController documentController,
       ActionListener listener)
   {
+    super(documentController);
     this.documentController = documentController;
     this.listener = listener;
   }
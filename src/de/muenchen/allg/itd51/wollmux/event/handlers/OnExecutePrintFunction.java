@@ -24,6 +24,7 @@ public class OnExecutePrintFunction extends BasicEvent
 
   public OnExecutePrintFunction(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
@@ -0,0 +1,91 @@
+package de.muenchen.allg.itd51.wollmux.event.handlers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.muenchen.allg.itd51.wollmux.WollMuxFehlerException;
+import de.muenchen.allg.itd51.wollmux.core.util.L;
+import de.muenchen.allg.itd51.wollmux.document.DocumentLoader;
+import de.muenchen.allg.itd51.wollmux.document.TemplateWarmPool;
+import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
+import de.muenchen.allg.itd51.wollmux.event.WollMuxEventHandler;
+
+/**
+ * Öffnet das nächste Dokument für den {@link TemplateWarmPool} unsichtbar. Die
+ * Bearbeitung erfolgt wie bei jedem anderen Dokument durch
+ * {@link OnProcessTextDocument}, das danach das nächste OnFillTemplatePool-Event
+ * erzeugt. Unsichtbare Dokumente, deren Bearbeitung während des Öffnens begonnen
+ * hat, werden danach erneut zur Bearbeitung eingestellt, weil erst dann feststeht,
+ * welches davon für den Pool geöffnet wurde. So wird immer nur ein Dokument gleichzeitig vorbereitet. Das Event
+ * läuft im Hintergrund (siehe {@link WollMuxEvent#isBackground()}), damit das
+ * Öffnen andere Events nicht aufhält.
+ */
+public class OnFillTemplatePool extends BasicEvent
+{
+  private static final Logger LOGGER = LoggerFactory
+      .getLogger(OnFillTemplatePool.class);
+
+  @Override
+  protected void doit() throws WollMuxFehlerException
+  {
+    TemplateWarmPool pool = TemplateWarmPool.getInstance();
+    if (pool == null)
+      return;
+    List<String> fragIDs = pool.nextToLoad();
+    if (fragIDs == null)
+      return;
+
+    String[] urls;
+    try
+    {
+      urls = OnOpenDocument.resolveURLs(fragIDs);
+      if (!pool.reserve(fragIDs,
+          DocumentLoader.getInstance().getContentLength(urls[0])))
+        return;
+    } catch (WollMuxFehlerException | IOException e)
+    {
+      LOGGER.info(L.m("Die Vorlage %1 kann nicht vorgehalten werden.", fragIDs),
+          e);
+      pool.failed(fragIDs);
+      return;
+    }
+
+    pool.startOpening();
+    try
+    {
+      TextDocumentController documentController = OnOpenDocument
+          .openTextDocument(urls[0], Arrays.copyOfRange(urls, 1, urls.length),
+              true, true);
+      if (documentController == null)
+        pool.failed(fragIDs);
+      else
+        pool.loading(fragIDs, documentController);
+    } catch (WollMuxFehlerException e)
+    {
+      LOGGER.info(L.m("Die Vorlage %1 kann nicht vorgehalten werden.", fragIDs),
+          e);
+      pool.failed(fragIDs);
+    } finally
+    {
+      for (TextDocumentController deferred : pool.finishOpening())
+        WollMuxEventHandler.getInstance().handleProcessTextDocument(deferred,
+            false);
+    }
+  }
+
+  @Override
+  public boolean isBackground()
+  {
+    return true;
+  }
+
+  @Override
+  public String toString()
+  {
+    return this.getClass().getSimpleName() + "()";
+  }
+}
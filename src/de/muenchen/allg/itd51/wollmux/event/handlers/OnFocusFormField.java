@@ -27,6 +27,7 @@ public class OnFocusFormField extends BasicEvent
   public OnFocusFormField(TextDocumentController documentController,
       String fieldId)
   {
+    super(documentController);
     this.documentController = documentController;
     this.fieldId = fieldId;
   }
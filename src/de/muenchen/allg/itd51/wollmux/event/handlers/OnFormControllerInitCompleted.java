@@ -26,6 +26,7 @@ public class OnFormControllerInitCompleted extends BasicEvent
   public OnFormControllerInitCompleted(
       TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
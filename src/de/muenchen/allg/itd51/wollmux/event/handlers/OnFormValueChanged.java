@@ -1,5 +1,7 @@
 package de.muenchen.allg.itd51.wollmux.event.handlers;
 
+import java.util.Arrays;
+
 import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
 
 /**
@@ -35,6 +37,7 @@ public class OnFormValueChanged extends BasicEvent
       String fieldId,
       String newValue)
   {
+    super(documentController);
     this.fieldId = fieldId;
     this.newValue = newValue;
     this.documentController = documentController;
@@ -52,4 +55,14 @@ public class OnFormValueChanged extends BasicEvent
     return this.getClass().getSimpleName() + "(" + fieldId + "', '" + newValue
         + "')";
   }
+
+  /**
+   * Schnell aufeinanderfolgende Änderungen desselben Feldes (z.B. beim Tippen in
+   * der FormGUI) werden zusammengefasst, es wird nur der letzte Wert übertragen.
+   */
+  @Override
+  public Object getCoalescingKey()
+  {
+    return Arrays.asList(OnFormValueChanged.class, documentController, fieldId);
+  }
 }
\ No newline at end of file
@@ -17,6 +17,7 @@ public class OnFormularMax4000Returned extends BasicEvent
 
   public OnFormularMax4000Returned(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
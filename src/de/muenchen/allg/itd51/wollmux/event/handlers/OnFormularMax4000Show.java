@@ -23,6 +23,7 @@ public class OnFormularMax4000Show extends BasicEvent
 
   public OnFormularMax4000Show(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
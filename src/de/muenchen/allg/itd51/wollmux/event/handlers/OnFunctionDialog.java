@@ -1,5 +1,6 @@
 package de.muenchen.allg.itd51.wollmux.event.handlers;
 
+import java.awt.event.ActionEvent;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -28,6 +29,7 @@ public class OnFunctionDialog extends BasicEvent
   public OnFunctionDialog(TextDocumentController documentController,
       String dialogName)
   {
+    super(documentController);
     this.documentController = documentController;
     this.dialogName = dialogName;
   }
@@ -42,24 +44,32 @@ public class OnFunctionDialog extends BasicEvent
       throw new WollMuxFehlerException(L.m(
           "Funktionsdialog '%1' ist nicht definiert.", dialogName));
 
-    // Dialoginstanz erzeugen und modal anzeigen:
-    Dialog dialogInst = null;
+    // Dialoginstanz erzeugen und quasi modal anzeigen:
+    DialogListener dialogListener = lockForDialog();
+    Dialog dialogInst;
     try
     {
       dialogInst = dialog.instanceFor(new HashMap<Object, Object>());
 
-      setLock();
-      dialogInst.show(unlockActionListener,
+      dialogInst.show(dialogListener,
           documentController.getFunctionLibrary(),
           documentController.getDialogLibrary());
-      waitForUnlock();
     } catch (ConfigurationErrorException e)
     {
+      dialogListener.abort();
       throw new CantStartDialogException(e);
     }
 
+    // Die Werte werden erst nach dem Schließen des Dialogs übernommen, ohne bis
+    // dahin die Bearbeitung anderer Events aufzuhalten.
+    continueWith(dialogListener.getResult(),
+        actionEvent -> applyDialogResult(dialogInst, actionEvent));
+  }
+
+  private void applyDialogResult(Dialog dialogInst, ActionEvent actionEvent)
+  {
     // Abbruch, wenn der Dialog nicht mit OK beendet wurde.
-    String cmd = unlockActionListener.actionEvent.getActionCommand();
+    String cmd = actionEvent.getActionCommand();
     if (!cmd.equalsIgnoreCase("select"))
       return;
 
@@ -10,6 +10,7 @@ public class OnHandleMailMergeNewReturned extends BasicEvent
 
   public OnHandleMailMergeNewReturned(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
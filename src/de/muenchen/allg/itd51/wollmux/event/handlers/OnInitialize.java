@@ -77,6 +77,9 @@ public class OnInitialize extends BasicEvent
         InfoDialog.showInfoModal(L.m("WollMux-Info"), message);
       }
     }
+
+    // Häufig verwendete Vorlagen im Hintergrund vorbereiten.
+    WollMuxEventHandler.getInstance().handleFillTemplatePool();
   }
 
   /**
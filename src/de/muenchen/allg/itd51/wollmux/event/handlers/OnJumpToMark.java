@@ -32,6 +32,7 @@ public class OnJumpToMark extends BasicEvent
 
   public OnJumpToMark(XTextDocument doc, boolean msg)
   {
+    super(doc);
     this.doc = doc;
     this.msg = msg;
   }
@@ -65,7 +66,7 @@ public class OnJumpToMark extends BasicEvent
       cmd.markDone(true);
       documentController.getModel().setDocumentModified(modified);
 
-      documentController.getModel().getDocumentCommands().update();
+      documentController.updateDocumentCommands();
 
     } else
     {
@@ -18,6 +18,7 @@ public class OnJumpToPlaceholder extends BasicEvent
 
   public OnJumpToPlaceholder(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
@@ -17,6 +17,7 @@ public class OnManagePrintFunction extends BasicEvent
   public OnManagePrintFunction(XTextDocument doc, String functionName,
       boolean remove)
   {
+    super(doc);
     this.doc = doc;
     this.functionName = functionName;
     this.remove = remove;
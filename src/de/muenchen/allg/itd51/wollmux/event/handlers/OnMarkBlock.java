@@ -59,6 +59,7 @@ public class OnMarkBlock extends BasicEvent
   public OnMarkBlock(TextDocumentController documentController,
       String blockname)
   {
+    super(documentController);
     this.documentController = documentController;
     this.blockname = blockname;
   }
@@ -223,7 +224,7 @@ public class OnMarkBlock extends BasicEvent
     }
 
     // PrintBlöcke neu einlesen:
-    documentController.getModel().getDocumentCommands().update();
+    documentController.updateDocumentCommands();
     DocumentCommandInterpreter dci = new DocumentCommandInterpreter(
         documentController, WollMuxFiles.isDebugMode());
     dci.scanGlobalDocumentCommands();
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -15,13 +16,18 @@ import com.sun.star.lang.XComponent;
 import de.muenchen.allg.afid.UNO;
 import de.muenchen.allg.itd51.wollmux.WollMuxFehlerException;
 import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
-import de.muenchen.allg.itd51.wollmux.WollMuxSingleton;
-import de.muenchen.allg.itd51.wollmux.core.document.VisibleTextFragmentList;
+import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
 import de.muenchen.allg.itd51.wollmux.core.parser.ConfigurationErrorException;
 import de.muenchen.allg.itd51.wollmux.core.parser.InvalidIdentifierException;
+import de.muenchen.allg.itd51.wollmux.core.parser.NodeNotFoundException;
 import de.muenchen.allg.itd51.wollmux.core.util.L;
+import de.muenchen.allg.itd51.wollmux.document.DocumentLoader;
 import de.muenchen.allg.itd51.wollmux.document.DocumentManager;
+import de.muenchen.allg.itd51.wollmux.document.ExpandedTemplateCache;
+import de.muenchen.allg.itd51.wollmux.document.TemplateWarmPool;
 import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
+import de.muenchen.allg.itd51.wollmux.document.TextFragmentIndex;
+import de.muenchen.allg.itd51.wollmux.event.WollMuxEventHandler;
 
 /**
  * Obsolete, aber aus Kompatibilitätgründen noch vorhanden. Bitte handleOpen()
@@ -64,24 +70,40 @@ public class OnOpenDocument extends BasicEvent
   {
     if (!fragIDs.isEmpty())
     {
-      openTextDocument(fragIDs, asTemplate);
+      // Vorlagen möglichst aus dem TemplateWarmPool übernehmen.
+      TemplateWarmPool pool = asTemplate ? TemplateWarmPool.getInstance() : null;
+      if (pool != null)
+      {
+        pool.recordUsage(fragIDs);
+        TextDocumentController pooled = pool.take(fragIDs);
+        WollMuxEventHandler.getInstance().handleFillTemplatePool();
+        if (pooled != null)
+        {
+          showPooledDocument(pooled);
+          return;
+        }
+      }
+
+      String[] urls = resolveURLs(fragIDs);
+      openTextDocument(urls[0], Arrays.copyOfRange(urls, 1, urls.length),
+          asTemplate, false);
     }
   }
 
   /**
-  *
-  * @param fragIDs
-  * @param asTemplate
-  * @throws WollMuxFehlerException
-  */
-  private void openTextDocument(List<String> fragIDs,
-      boolean asTemplate) throws WollMuxFehlerException
+   * Löst die FRAG_IDs fragIDs nach der jeweils ersten funktionierenden URL auf.
+   *
+   * @param fragIDs
+   * @return Die von OOo aufbereiteten URLs in der Reihenfolge von fragIDs.
+   * @throws WollMuxFehlerException
+   *           wenn eine FRAG_ID nicht aufgelöst werden kann.
+   */
+  static String[] resolveURLs(List<String> fragIDs) throws WollMuxFehlerException
   {
     // das erste Argument ist das unmittelbar zu landende Textfragment und
     // wird nach urlStr aufgelöst. Alle weiteren Argumente (falls vorhanden)
     // werden nach argsUrlStr aufgelöst.
-    String loadUrlStr = "";
-    String[] fragUrls = new String[fragIDs.size() - 1];
+    String[] resolved = new String[fragIDs.size()];
     String urlStr = "";
 
     Iterator<String> iter = fragIDs.iterator();
@@ -97,8 +119,7 @@ public class OnOpenDocument extends BasicEvent
           frag_id));
       try
       {
-        urls = VisibleTextFragmentList
-            .getURLsByID(WollMuxFiles.getWollmuxConf(), frag_id);
+        urls = TextFragmentIndex.getURLsByID(frag_id);
       } catch (InvalidIdentifierException e)
       {
         error = e;
@@ -122,14 +143,13 @@ public class OnOpenDocument extends BasicEvent
       {
         urlStr = iterUrls.next();
 
-        // URL erzeugen und prüfen, ob sie aufgelöst werden kann
-        URL url;
+        // URL erzeugen und das Dokument laden. Der Download wird gecacht und
+        // beim Einfügen als Textfragment wiederverwendet.
         try
         {
-          url = WollMuxFiles.makeURL(urlStr);
+          URL url = WollMuxFiles.makeURL(urlStr);
           urlStr = UNO.getParsedUNOUrl(url.toExternalForm()).Complete;
-          url = WollMuxFiles.makeURL(urlStr);
-          WollMuxSingleton.checkURL(url);
+          DocumentLoader.getInstance().checkAvailable(urlStr);
         } catch (MalformedURLException e)
         {
           LOGGER.info("", e);
@@ -153,28 +173,54 @@ public class OnOpenDocument extends BasicEvent
             + "\n\n" + errors);
       }
 
-      // URL in die in loadUrlStr (zum sofort öffnen) und in argsUrlStr (zum
-      // später öffnen) aufnehmen
-      if (i == 0)
-      {
-        loadUrlStr = urlStr;
-      } else
-      {
-        fragUrls[i - 1] = urlStr;
-      }
+      resolved[i] = urlStr;
     }
+    return resolved;
+  }
 
-    // open document as Template (or as document):
+  /**
+   * Öffnet das Dokument loadUrlStr.
+   *
+   * @param loadUrlStr
+   *          Die URL des Dokuments.
+   * @param fragUrls
+   *          Die URLs für das Dokumentkommando insertContent.
+   * @param asTemplate
+   *          true, wenn das Dokument als "Unbenannt X" geöffnet werden soll.
+   * @param hidden
+   *          true, wenn das Dokument unsichtbar geöffnet werden soll.
+   * @return Den Controller des Dokuments oder null, wenn es kein Textdokument ist.
+   * @throws WollMuxFehlerException
+   */
+  static TextDocumentController openTextDocument(String loadUrlStr,
+      String[] fragUrls, boolean asTemplate, boolean hidden)
+      throws WollMuxFehlerException
+  {
+    // open document as Template (or as document). Vorlagen werden, falls
+    // möglich, bereits expandiert aus dem ExpandedTemplateCache geladen.
     TextDocumentController documentController = null;
+    ExpandedTemplateCache cache = asTemplate ? ExpandedTemplateCache.getInstance()
+        : null;
+    XComponent doc = null;
+    if (cache != null)
+      doc = cache.load(loadUrlStr, fragUrls, hidden);
+    boolean expand = doc == null && cache != null;
     try
     {
-      XComponent doc = UNO.loadComponentFromURL(loadUrlStr, asTemplate, true);
+      // Die Vorlage wird aus den bereits von resolveURLs geladenen Daten
+      // geöffnet. Da kein Filter vorgegeben wird, öffnet die Typerkennung auch
+      // Vorlagen in anderen Formaten als ODF.
+      if (doc == null)
+        doc = DocumentLoader.getInstance().openDocument(loadUrlStr, asTemplate,
+            hidden);
 
       if (UNO.XTextDocument(doc) != null)
       {
         documentController = DocumentManager
             .getTextDocumentController(UNO.XTextDocument(doc));
         documentController.getModel().setFragUrls(fragUrls);
+        if (expand)
+          cache.expect(UNO.XTextDocument(doc), loadUrlStr, fragUrls);
       }
     } catch (java.lang.Exception x)
     {
@@ -183,6 +229,38 @@ public class OnOpenDocument extends BasicEvent
           "Die Vorlage mit der URL '%1' kann nicht geöffnet werden.",
           loadUrlStr), x);
     }
+    return documentController;
+  }
+
+  /**
+   * Zeigt das bereits bearbeitete Dokument aus dem TemplateWarmPool an und holt
+   * die Schritte von {@link OnProcessTextDocument} nach, die nur für sichtbare
+   * Dokumente ausgeführt werden.
+   */
+  private void showPooledDocument(TextDocumentController documentController)
+  {
+    documentController.getFrameController().setWindowVisible(true);
+    try
+    {
+      ConfigThingy tds = WollMuxFiles.getWollmuxConf().query("Fenster")
+          .query("Textdokument").getLastChild();
+      documentController.getFrameController().setWindowViewSettings(tds);
+    } catch (NodeNotFoundException e)
+    {
+      // kein Fehler
+    }
+
+    WollMuxEventHandler.getInstance().handleNotifyDocumentEventListener(null,
+        WollMuxEventHandler.ON_WOLLMUX_PROCESSING_FINISHED,
+        documentController.getModel().doc);
+
+    try
+    {
+      documentController.getFrameController().getFrame().contextChanged();
+    } catch (java.lang.Exception e)
+    {
+      LOGGER.debug("", e);
+    }
   }
 
   @Override
@@ -13,6 +13,8 @@ import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
 import de.muenchen.allg.itd51.wollmux.XPALChangeEventListener;
 import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
 import de.muenchen.allg.itd51.wollmux.db.DatasourceJoinerFactory;
+import de.muenchen.allg.itd51.wollmux.document.TemplateWarmPool;
+import de.muenchen.allg.itd51.wollmux.event.WollMuxEventHandler;
 
 /**
  * Dieses Event wird immer dann erzeugt, wenn ein Dialog zur Bearbeitung der PAL
@@ -57,5 +59,13 @@ public class OnPALChangedNotify extends BasicEvent
     {
       LOGGER.error("Cache konnte nicht gespeichert werden.", e);
     }
+
+    // Vorgehaltene Dokumente enthalten noch die alten Absenderdaten.
+    TemplateWarmPool pool = TemplateWarmPool.getInstance();
+    if (pool != null)
+    {
+      pool.clear();
+      WollMuxEventHandler.getInstance().handleFillTemplatePool();
+    }
   }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ public class OnPrint extends BasicEvent
   public OnPrint(TextDocumentController documentController, XDispatch origDisp,
       com.sun.star.util.URL origUrl, PropertyValue[] origArgs)
   {
+    super(documentController);
     this.documentController = documentController;
     this.origDisp = origDisp;
     this.origUrl = origUrl;
@@ -16,6 +16,7 @@ public class OnPrintPage extends BasicEvent
 
   public OnPrintPage(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
@@ -13,6 +13,8 @@ import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
 import de.muenchen.allg.itd51.wollmux.core.parser.NodeNotFoundException;
 import de.muenchen.allg.itd51.wollmux.core.util.L;
 import de.muenchen.allg.itd51.wollmux.document.DocumentManager;
+import de.muenchen.allg.itd51.wollmux.document.ProcessingTrace;
+import de.muenchen.allg.itd51.wollmux.document.TemplateWarmPool;
 import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
 import de.muenchen.allg.itd51.wollmux.document.commands.DocumentCommandInterpreter;
 import de.muenchen.allg.itd51.wollmux.event.WollMuxEventHandler;
@@ -37,6 +39,7 @@ public class OnProcessTextDocument extends BasicEvent
   public OnProcessTextDocument(TextDocumentController documentController,
       boolean visible)
   {
+    super(documentController);
     this.documentController = documentController;
     this.visible = visible;
   }
@@ -47,6 +50,13 @@ public class OnProcessTextDocument extends BasicEvent
     if (documentController == null)
       return;
 
+    // Wird gerade ein Dokument für den TemplateWarmPool geöffnet, steht erst nach
+    // dem Öffnen fest, ob es dieses Dokument ist. OnFillTemplatePool stellt das
+    // Dokument dann erneut zur Bearbeitung ein.
+    TemplateWarmPool pool = TemplateWarmPool.getInstance();
+    if (!visible && pool != null && pool.deferProcessing(documentController))
+      return;
+
     // Konfigurationsabschnitt Textdokument verarbeiten falls Dok sichtbar:
     if (visible)
       try
@@ -59,16 +69,25 @@ public class OnProcessTextDocument extends BasicEvent
 //        kein Fehler
       }
 
+    // Dokumente für den TemplateWarmPool werden erst angezeigt, wenn sie
+    // benötigt werden (siehe OnOpenDocument).
+    boolean pooled = pool != null
+        && pool.isLoading(documentController.getModel().doc);
+
     // Mögliche Aktionen für das neu geöffnete Dokument:
     DocumentCommandInterpreter dci = new DocumentCommandInterpreter(
         documentController, WollMuxFiles.isDebugMode());
+    ProcessingTrace trace = new ProcessingTrace(documentController);
+    dci.setTrace(trace);
 
     try
     {
       // Globale Dokumentkommandos wie z.B. setType, setPrintFunction, ...
       // auswerten.
+      trace.stage("scanGlobalDocumentCommands");
       dci.scanGlobalDocumentCommands();
 
+      trace.stage("evaluateDocumentActions");
       int actions = documentController.evaluateDocumentActions(GlobalFunctions
           .getInstance().getDocumentActionFunctions().iterator());
 
@@ -79,11 +98,20 @@ public class OnProcessTextDocument extends BasicEvent
         dci.executeTemplateCommands();
 
         // manche Kommandos sind erst nach der Expansion verfügbar
+        trace.stage("scanGlobalDocumentCommands");
         dci.scanGlobalDocumentCommands();
       }
       // insertFormValue-Kommandos auswerten
+      trace.stage("scanInsertFormValueCommands");
       dci.scanInsertFormValueCommands();
 
+      if (pooled)
+      {
+        pool.ready(documentController);
+        WollMuxEventHandler.getInstance().handleFillTemplatePool();
+        return;
+      }
+
       // Bei Formularen:
       // Anmerkung: actions == allactions wird NICHT so interpretiert, dass auch
       // bei Dokumenten ohne Formularfunktionen der folgende Abschnitt ausgeführt
@@ -103,6 +131,7 @@ public class OnProcessTextDocument extends BasicEvent
           }
 
         // FormGUI starten
+        trace.stage("FormGUI");
         try
         {
           FormController formController = documentController.createFormController();
@@ -122,9 +151,18 @@ public class OnProcessTextDocument extends BasicEvent
       }
     } catch (java.lang.Exception e)
     {
+      if (pooled)
+      {
+        LOGGER.info(L.m("Fehler bei der Dokumentbearbeitung."), e);
+        pool.discard(documentController);
+        return;
+      }
       throw new WollMuxFehlerException(
           L.m("Fehler bei der Dokumentbearbeitung."),
           e);
+    } finally
+    {
+      trace.finish();
     }
 
     // Registrierte XEventListener (etwas später) informieren, dass die
@@ -28,6 +28,7 @@ public class OnRegisterDispatchInterceptor extends BasicEvent
   public OnRegisterDispatchInterceptor(
       TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
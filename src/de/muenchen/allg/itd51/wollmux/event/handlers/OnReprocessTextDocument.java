@@ -13,6 +13,7 @@ public class OnReprocessTextDocument extends BasicEvent
 
   public OnReprocessTextDocument(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
     this.model = documentController.getModel();
   }
@@ -25,7 +26,7 @@ public class OnReprocessTextDocument extends BasicEvent
 
     // Dokument mit neuen Dokumentkommandos über den
     // DocumentCommandInterpreter bearbeiten:
-    model.getDocumentCommands().update();
+    documentController.updateDocumentCommands();
     DocumentCommandInterpreter dci = new DocumentCommandInterpreter(
         documentController, WollMuxFiles.isDebugMode());
     try
@@ -49,6 +49,7 @@ public class OnSaveAs extends BasicEvent
   public OnSaveAs(TextDocumentController documentController,
       DispatchHelper helper)
   {
+    super(documentController);
     this.documentController = documentController;
     this.helper = helper;
   }
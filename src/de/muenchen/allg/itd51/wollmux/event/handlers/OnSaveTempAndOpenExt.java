@@ -27,6 +27,7 @@ public class OnSaveTempAndOpenExt extends BasicEvent
   public OnSaveTempAndOpenExt(TextDocumentController documentController,
       String ext)
   {
+    super(documentController);
     this.documentController = documentController;
     this.ext = ext;
   }
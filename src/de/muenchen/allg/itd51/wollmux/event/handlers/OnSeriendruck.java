@@ -20,6 +20,7 @@ public class OnSeriendruck extends BasicEvent
 
   public OnSeriendruck(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
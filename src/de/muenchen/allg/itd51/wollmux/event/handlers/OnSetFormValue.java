@@ -1,9 +1,11 @@
 package de.muenchen.allg.itd51.wollmux.event.handlers;
 
 import java.awt.event.ActionListener;
+import java.util.Arrays;
 
 import com.sun.star.text.XTextDocument;
 
+import de.muenchen.allg.itd51.wollmux.HashableComponent;
 import de.muenchen.allg.itd51.wollmux.WollMuxFehlerException;
 import de.muenchen.allg.itd51.wollmux.document.DocumentManager;
 import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
@@ -18,11 +20,12 @@ public class OnSetFormValue extends BasicEvent
 
   private String value;
 
-  private final ActionListener listener;
+  private ActionListener listener;
 
   public OnSetFormValue(XTextDocument doc, String id, String value,
       ActionListener listener)
   {
+    super(doc);
     this.doc = doc;
     this.id = id;
     this.value = value;
@@ -41,7 +44,7 @@ public class OnSetFormValue extends BasicEvent
       // Werte über den FormController (den das FormModel kennt) setzen lassen
       // (damit sind auch automatisch alle Abhängigkeiten richtig aufgelöst)
       formModel.setValue(id, value, e -> WollMuxEventHandler.getInstance()
-          .handleSetFormValueFinished(listener));
+          .handleSetFormValueFinished(doc, listener));
     } else
     {
       // Werte selber setzen:
@@ -58,4 +61,34 @@ public class OnSetFormValue extends BasicEvent
         + id
         + "', value='" + value + "')";
   }
+
+  /**
+   * Wird der Wert desselben Feldes mehrfach gesetzt, bevor das Event bearbeitet
+   * wurde, so wird nur der letzte Wert gesetzt.
+   */
+  @Override
+  public Object getCoalescingKey()
+  {
+    return Arrays.asList(OnSetFormValue.class, new HashableComponent(doc), id);
+  }
+
+  /**
+   * Die Listener des ersetzten Events werden zusammen mit dem eigenen Listener
+   * informiert, sobald der neue Wert gesetzt ist.
+   */
+  @Override
+  public void coalesce(WollMuxEvent older)
+  {
+    ActionListener own = listener;
+    ActionListener replaced = ((OnSetFormValue) older).listener;
+    if (replaced == null)
+      return;
+    if (own == null)
+      listener = replaced;
+    else
+      listener = e -> {
+        replaced.actionPerformed(e);
+        own.actionPerformed(e);
+      };
+  }
 }
\ No newline at end of file
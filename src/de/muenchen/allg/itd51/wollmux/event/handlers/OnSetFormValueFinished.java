@@ -2,6 +2,8 @@ package de.muenchen.allg.itd51.wollmux.event.handlers;
 
 import java.awt.event.ActionListener;
 
+import com.sun.star.text.XTextDocument;
+
 import de.muenchen.allg.itd51.wollmux.WollMuxFehlerException;
 
 /**
@@ -12,8 +14,12 @@ import de.muenchen.allg.itd51.wollmux.WollMuxFehlerException;
  * handleSetFormValueViaPrintModel() nicht selbst informieren konnte.
  *
  * Das Event wird aus der Implementierung vom OnSetFormValueViaPrintModel.doit()
- * erzeugt, wenn Feldänderungen über die FormGUI laufen.
+ * erzeugt, wenn Feldänderungen über die FormGUI laufen. Es wird in der Queue des
+ * Dokuments doc abgearbeitet und damit erst nach den Events, die die abhängigen
+ * Formularfelder anpassen.
  *
+ * @param doc
+ *          Das Dokument, dessen Formularwert gesetzt wurde.
  * @param unlockActionListener
  *          Der zu informierende unlockActionListener.
  */
@@ -21,8 +27,10 @@ public class OnSetFormValueFinished extends BasicEvent
 {
   private ActionListener listener;
 
-  public OnSetFormValueFinished(ActionListener unlockActionListener)
+  public OnSetFormValueFinished(XTextDocument doc,
+      ActionListener unlockActionListener)
   {
+    super(doc);
     this.listener = unlockActionListener;
   }
 
@@ -0,0 +1,71 @@
+package de.muenchen.allg.itd51.wollmux.event.handlers;
+
+import java.awt.event.ActionListener;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.sun.star.text.XTextDocument;
+
+import de.muenchen.allg.itd51.wollmux.WollMuxFehlerException;
+import de.muenchen.allg.itd51.wollmux.document.DocumentManager;
+import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
+import de.muenchen.allg.itd51.wollmux.event.WollMuxEventHandler;
+import de.muenchen.allg.itd51.wollmux.form.control.FormController;
+
+/**
+ * Setzt mehrere Formularwerte auf einmal. Die Werte werden erst bei der
+ * Ausführung des Events von values abgeholt, so dass alle bis dahin gesammelten
+ * Werte in einem Durchgang übernommen werden (siehe
+ * {@link de.muenchen.allg.itd51.wollmux.XWollMuxDocument#updateFormGUI()}).
+ */
+public class OnSetFormValues extends BasicEvent
+{
+  private XTextDocument doc;
+
+  private Supplier<Map<String, String>> values;
+
+  private ActionListener listener;
+
+  public OnSetFormValues(XTextDocument doc, Supplier<Map<String, String>> values,
+      ActionListener listener)
+  {
+    super(doc);
+    this.doc = doc;
+    this.values = values;
+    this.listener = listener;
+  }
+
+  @Override
+  protected void doit() throws WollMuxFehlerException
+  {
+    Map<String, String> newValues = values.get();
+
+    FormController formModel = DocumentManager.getDocumentManager().getFormModel(doc);
+    if (formModel != null)
+    {
+      // Werte über den FormController setzen, damit alle Abhängigkeiten aufgelöst
+      // werden. Die Anpassung des Dokuments erfolgt in eigenen Events, daher wird
+      // der Listener erst danach informiert.
+      for (Map.Entry<String, String> entry : newValues.entrySet())
+        formModel.setValue(entry.getKey(), entry.getValue(), null);
+      WollMuxEventHandler.getInstance().handleSetFormValueFinished(doc,
+          listener);
+    } else
+    {
+      if (!newValues.isEmpty())
+      {
+        TextDocumentController documentController = DocumentManager
+            .getTextDocumentController(doc);
+        documentController.addFormFieldValues(newValues);
+      }
+      if (listener != null)
+        listener.actionPerformed(null);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return this.getClass().getSimpleName() + "(#" + doc.hashCode() + ")";
+  }
+}
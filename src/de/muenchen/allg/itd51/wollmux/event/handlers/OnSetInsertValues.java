@@ -50,6 +50,7 @@ public class OnSetInsertValues extends BasicEvent
       Map<String, String> mapDbSpalteToValue,
       ActionListener unlockActionListener)
   {
+    super(doc);
     this.doc = doc;
     this.mapDbSpalteToValue = mapDbSpalteToValue;
     this.listener = unlockActionListener;
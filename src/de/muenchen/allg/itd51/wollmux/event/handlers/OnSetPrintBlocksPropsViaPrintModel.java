@@ -42,6 +42,7 @@ public class OnSetPrintBlocksPropsViaPrintModel extends BasicEvent
   public OnSetPrintBlocksPropsViaPrintModel(XTextDocument doc, String blockName,
       boolean visible, boolean showHighlightColor, ActionListener listener)
   {
+    super(doc);
     this.doc = doc;
     this.blockName = blockName;
     this.visible = visible;
@@ -41,6 +41,7 @@ public class OnSetVisibleState extends BasicEvent
       String groupId,
       boolean visible, ActionListener listener)
   {
+    super(documentController);
     this.documentController = documentController;
     this.groupId = groupId;
     this.visible = visible;
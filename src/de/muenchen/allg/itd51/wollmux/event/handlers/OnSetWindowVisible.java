@@ -18,6 +18,7 @@ public class OnSetWindowVisible extends BasicEvent
   public OnSetWindowVisible(TextDocumentController documentController,
       boolean visible)
   {
+    super(documentController);
     this.documentController = documentController;
     this.visible = visible;
   }
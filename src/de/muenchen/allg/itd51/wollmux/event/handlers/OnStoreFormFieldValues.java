@@ -0,0 +1,44 @@
+package de.muenchen.allg.itd51.wollmux.event.handlers;
+
+import java.util.Arrays;
+
+import de.muenchen.allg.itd51.wollmux.document.TextDocumentController;
+
+/**
+ * Schreibt die geänderten Formularwerte eines Dokuments in die persistenten Daten
+ * (siehe {@link TextDocumentController#storeFormFieldValues()}). Da das Event
+ * hinter den bereits erzeugten Events des Dokuments eingereiht wird, werden alle
+ * bis dahin gesetzten Werte auf einmal geschrieben.
+ */
+public class OnStoreFormFieldValues extends BasicEvent
+{
+  private TextDocumentController documentController;
+
+  public OnStoreFormFieldValues(TextDocumentController documentController)
+  {
+    super(documentController);
+    this.documentController = documentController;
+  }
+
+  @Override
+  protected void doit()
+  {
+    documentController.storeFormFieldValues();
+  }
+
+  @Override
+  public String toString()
+  {
+    return this.getClass().getSimpleName() + "()";
+  }
+
+  /**
+   * Wartet bereits ein Event für dasselbe Dokument, wird es durch das neuere
+   * ersetzt.
+   */
+  @Override
+  public Object getCoalescingKey()
+  {
+    return Arrays.asList(OnStoreFormFieldValues.class, documentController);
+  }
+}
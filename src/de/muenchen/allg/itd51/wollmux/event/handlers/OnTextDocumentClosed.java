@@ -45,6 +45,11 @@ public class OnTextDocumentClosed extends BasicEvent
 
   public OnTextDocumentClosed(DocumentManager.Info doc)
   {
+    // Das Event wird in der Queue des geschlossenen Dokuments abgearbeitet, damit
+    // noch ausstehende Events des Dokuments vor dem dispose bearbeitet werden.
+    // getTextDocument() ist nicht synchronized und kann daher gefahrlos schon
+    // hier abgefragt werden.
+    super(doc.getTextDocument());
     this.docInfo = doc;
   }
 
@@ -33,6 +33,7 @@ public class OnTextbausteinEinfuegen extends BasicEvent
   public OnTextbausteinEinfuegen(TextDocumentController documentController,
       boolean reprocess)
   {
+    super(documentController);
     this.documentController = documentController;
     this.reprocess = reprocess;
 
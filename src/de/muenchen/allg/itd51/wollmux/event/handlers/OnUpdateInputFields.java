@@ -16,6 +16,7 @@ public class OnUpdateInputFields extends BasicEvent
 
   public OnUpdateInputFields(XTextDocument doc, DispatchHelper helper)
   {
+    super(doc);
     this.doc = doc;
     this.helper = helper;
   }
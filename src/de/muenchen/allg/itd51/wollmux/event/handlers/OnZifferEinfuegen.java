@@ -22,6 +22,7 @@ public class OnZifferEinfuegen extends BasicEvent
 
   public OnZifferEinfuegen(TextDocumentController documentController)
   {
+    super(documentController);
     this.documentController = documentController;
   }
 
@@ -1,5 +1,9 @@
 package de.muenchen.allg.itd51.wollmux.event.handlers;
 
+import java.util.concurrent.CompletableFuture;
+
+import com.sun.star.text.XTextDocument;
+
 /**
  * Interface für die Events, die dieser EventHandler abarbeitet.
  */
@@ -10,4 +14,70 @@ public interface WollMuxEvent
    * aufgerufen werden.
    */
   public void process();
+
+  /**
+   * Liefert das Dokument, auf das sich das Event bezieht. Events eines Dokuments
+   * werden in der Reihenfolge abgearbeitet, in der sie erzeugt wurden; Events
+   * verschiedener Dokumente können parallel abgearbeitet werden.
+   *
+   * @return Das Dokument oder null, wenn das Event dokumentunabhängig ist und
+   *         daher in der globalen Queue abgearbeitet werden soll.
+   */
+  public default XTextDocument getDocument()
+  {
+    return null;
+  }
+
+  /**
+   * Liefert true, wenn das dokumentunabhängige Event keine anderen Events
+   * aufhalten darf (z.B. das Vorbereiten von Dokumenten auf Vorrat). Solche Events
+   * werden nacheinander in einer eigenen Queue mit niedriger Priorität
+   * abgearbeitet, auf die weder die globale Queue noch die Queues der Dokumente
+   * warten.
+   *
+   * @return true für Hintergrund-Events, false für alle anderen Events.
+   */
+  public default boolean isBackground()
+  {
+    return false;
+  }
+
+  /**
+   * Liefert einen Schlüssel, über den gleichartige Events zusammengefasst werden
+   * können. Wird ein Event mit einem Schlüssel erzeugt, während ein anderes Event
+   * mit gleichem Schlüssel noch auf seine Bearbeitung wartet, so wird nur das
+   * neuere Event ausgeführt.
+   *
+   * @return Der Schlüssel oder null, wenn das Event immer ausgeführt werden muss.
+   */
+  public default Object getCoalescingKey()
+  {
+    return null;
+  }
+
+  /**
+   * Wird aufgerufen, wenn dieses Event das noch nicht bearbeitete Event older mit
+   * gleichem {@link #getCoalescingKey()} ersetzt. older wird nicht mehr ausgeführt,
+   * daher muss dieses Event ggf. dessen Listener mit benachrichtigen.
+   *
+   * @param older
+   *          Das ersetzte Event.
+   */
+  public default void coalesce(WollMuxEvent older)
+  {
+  }
+
+  /**
+   * Liefert ein Future, das fertig wird, wenn die Bearbeitung des Events
+   * vollständig abgeschlossen ist. Das ist in der Regel mit dem Ende von
+   * {@link #process()} der Fall, Events die auf das Schließen eines nicht modalen
+   * Dialogs warten, werden aber erst später fertig. Das nächste Event desselben
+   * Dokuments wird erst gestartet, wenn das Future fertig ist.
+   *
+   * @return Ein Future, das niemals mit einer Exception beendet wird.
+   */
+  public default CompletableFuture<Void> getCompletion()
+  {
+    return CompletableFuture.completedFuture(null);
+  }
 }
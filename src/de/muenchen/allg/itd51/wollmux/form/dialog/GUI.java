@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -156,6 +157,33 @@ public class GUI
    */
   private boolean processUIElementEvents = false;
 
+  /**
+   * Schützt die noch nicht in die GUI übertragenen Änderungen, die von beliebigen
+   * Threads gemeldet werden können.
+   */
+  private final Object pendingUpdatesLock = new Object();
+
+  /**
+   * Die noch nicht übertragenen Werte je ID des UI-Elements.
+   */
+  private final Map<String, String> pendingValues = new LinkedHashMap<>();
+
+  /**
+   * Die noch nicht übertragenen Sichtbarkeiten je Sichtbarkeitsgruppe.
+   */
+  private final Map<String, Boolean> pendingVisibility = new LinkedHashMap<>();
+
+  /**
+   * Die noch nicht übertragenen Plausibilitäten je ID des UI-Elements.
+   */
+  private final Map<String, Boolean> pendingStatus = new LinkedHashMap<>();
+
+  /**
+   * Ist true, wenn {@link #applyPendingUpdates()} bereits im Event-Dispatching
+   * Thread geplant ist.
+   */
+  private boolean updateScheduled = false;
+
   public GUI(FormController controller, ConfigThingy formFensterConf)
   {
     this.controller = controller;
@@ -877,50 +905,112 @@ public class GUI
   @Override
   public void statusChanged(String id, boolean okay)
   {
-    SwingUtilities.invokeLater(() -> {
-      if (uiElements.containsKey(id))
-      {
-        if (okay)
-        {
-          uiElements.get(id).setBackground(normalColor);
-        } else
-        {
-          uiElements.get(id).setBackground(plausiColor);
-        }
-      }
-    });
+    synchronized (pendingUpdatesLock)
+    {
+      pendingStatus.put(id, okay);
+      scheduleUpdate();
+    }
   }
 
   @Override
   public void visibilityChanged(String id, boolean visible)
   {
-    SwingUtilities.invokeLater(() -> {
-      if (visibilityGroups.containsKey(id))
-      {
-        for (UIElement element : visibilityGroups.get(id))
-        {
-          if (element.getComponent() instanceof JButton)
-          {
-            element.setEnabled(visible);
-          } else
-          {
-            element.setVisible(visible);
-          }
-        }
-      }
-    });
+    synchronized (pendingUpdatesLock)
+    {
+      pendingVisibility.put(id, visible);
+      scheduleUpdate();
+    }
   }
 
   @Override
   public void valueChanged(String id, String value)
   {
-    SwingUtilities.invokeLater(() -> {
-      if (uiElements.containsKey(id))
+    synchronized (pendingUpdatesLock)
+    {
+      pendingValues.put(id, value);
+      scheduleUpdate();
+    }
+  }
+
+  /**
+   * Sorgt dafür, dass {@link #applyPendingUpdates()} im Event-Dispatching Thread
+   * aufgerufen wird, falls dies noch nicht geplant ist. Muss mit
+   * {@link #pendingUpdatesLock} aufgerufen werden.
+   */
+  private void scheduleUpdate()
+  {
+    if (!updateScheduled)
+    {
+      updateScheduled = true;
+      SwingUtilities.invokeLater(this::applyPendingUpdates);
+    }
+  }
+
+  /**
+   * Überträgt alle seit dem letzten Aufruf gemeldeten Änderungen von Werten,
+   * Sichtbarkeiten und Plausibilitäten in einem Durchgang in die GUI. Wurde dasselbe
+   * Element mehrfach geändert, wird nur der letzte Zustand gesetzt. Das Layout
+   * wird danach einmal neu berechnet.
+   */
+  private void applyPendingUpdates()
+  {
+    Map<String, String> values;
+    Map<String, Boolean> visibilities;
+    Map<String, Boolean> status;
+    synchronized (pendingUpdatesLock)
+    {
+      values = new LinkedHashMap<>(pendingValues);
+      visibilities = new LinkedHashMap<>(pendingVisibility);
+      status = new LinkedHashMap<>(pendingStatus);
+      pendingValues.clear();
+      pendingVisibility.clear();
+      pendingStatus.clear();
+      updateScheduled = false;
+    }
+
+    boolean process = processUIElementEvents;
+    processUIElementEvents = false;
+    try
+    {
+      for (Map.Entry<String, String> entry : values.entrySet())
       {
-        processUIElementEvents = false;
-        uiElements.get(id).setString(value);
-        processUIElementEvents = true;
+        UIElement element = uiElements.get(entry.getKey());
+        if (element != null)
+          element.setString(entry.getValue());
       }
-    });
+    } finally
+    {
+      processUIElementEvents = process;
+    }
+
+    for (Map.Entry<String, Boolean> entry : visibilities.entrySet())
+    {
+      List<UIElement> group = visibilityGroups.get(entry.getKey());
+      if (group == null)
+        continue;
+      for (UIElement element : group)
+      {
+        if (element.getComponent() instanceof JButton)
+        {
+          element.setEnabled(entry.getValue());
+        } else
+        {
+          element.setVisible(entry.getValue());
+        }
+      }
+    }
+
+    for (Map.Entry<String, Boolean> entry : status.entrySet())
+    {
+      UIElement element = uiElements.get(entry.getKey());
+      if (element != null)
+        element.setBackground(entry.getValue() ? normalColor : plausiColor);
+    }
+
+    if (!visibilities.isEmpty() && myFrame != null)
+    {
+      myFrame.getContentPane().revalidate();
+      myFrame.repaint();
+    }
   }
 }
@@ -71,6 +71,7 @@ import com.sun.star.uno.UnoRuntime;
 import de.muenchen.allg.afid.UNO;
 import de.muenchen.allg.afid.UnoProps;
 import de.muenchen.allg.itd51.wollmux.HashableComponent;
+import de.muenchen.allg.itd51.wollmux.MemoryReleasePolicy;
 import de.muenchen.allg.itd51.wollmux.WollMuxFiles;
 import de.muenchen.allg.itd51.wollmux.Workarounds;
 import de.muenchen.allg.itd51.wollmux.core.util.L;
@@ -261,8 +262,9 @@ public class PrintIntoFile
         pageCount);
       fixInputUserFields(UNO.XTextFieldsSupplier(outputDoc).getTextFields());
 
-      oldShapes = null;
-      System.gc();
+      // Die Proxies der Shapes werden ab hier nicht mehr referenziert und erst vom
+      // GarbageCollector freigegeben.
+      MemoryReleasePolicy.getInstance().operationFinished(oldShapes.size());
     }
     catch (Exception x)
     {
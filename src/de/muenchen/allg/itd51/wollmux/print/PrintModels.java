@@ -106,6 +106,9 @@ public class PrintModels
    */
   public static XPrintModel createPrintModel(TextDocumentController documentController)
   {
+    // Druckfunktionen und Seriendruck arbeiten z.T. auf Kopien des Dokuments, die
+    // die aktuellen Formularwerte enthalten müssen.
+    documentController.storeFormFieldValues();
     return new MasterPrintModel(documentController);
   }
   
@@ -0,0 +1,127 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.muenchen.allg.itd51.wollmux.core.parser.ConfigThingy;
+
+public class TrafoResultCacheTest
+{
+  private Map<String, ConfigThingy> definitions;
+
+  private TrafoResultCache cache;
+
+  @Before
+  public void setUp() throws Exception
+  {
+    definitions = new HashMap<>();
+    define("Pure(CAT(VALUE \"a\" \"b\"))");
+    define("Extern(EXTERN(URL \"java:de.example.Test.run\"))");
+    define("Dialog(IF(STRCMP(VALUE \"a\" \"b\") THEN(DIALOG(\"Dlg\" \"Feld\")) ELSE \"c\"))");
+    define("BindPure(BIND(FUNCTION \"Pure\" SET(\"x\" VALUE \"y\")))");
+    define("BindExtern(BIND(FUNCTION \"Extern\" SET(\"x\" VALUE \"y\")))");
+    define("BindInline(BIND(FUNCTION(EXTERN(URL \"java:de.example.Test.run\"))))");
+    define("BindUnknown(BIND(FUNCTION \"Unknown\"))");
+    define("CycleA(BIND(FUNCTION \"CycleB\"))");
+    define("CycleB(BIND(FUNCTION \"CycleA\"))");
+    cache = new TrafoResultCache(definitions::get);
+  }
+
+  @Test
+  public void testFunctionWithoutExternalInputIsPure()
+  {
+    assertTrue(cache.isPure("Pure"));
+    assertTrue(cache.isPure("BindPure"));
+  }
+
+  @Test
+  public void testExternAndDialogAreImpure()
+  {
+    assertFalse(cache.isPure("Extern"));
+    assertFalse(cache.isPure("Dialog"));
+  }
+
+  @Test
+  public void testBoundFunctionsAreChecked()
+  {
+    assertFalse(cache.isPure("BindExtern"));
+    assertFalse(cache.isPure("BindInline"));
+  }
+
+  @Test
+  public void testUnknownFunctionIsImpure()
+  {
+    assertFalse(cache.isPure("Unknown"));
+    assertFalse(cache.isPure("BindUnknown"));
+  }
+
+  @Test
+  public void testCycleIsPure()
+  {
+    assertTrue(cache.isPure("CycleA"));
+    assertTrue(cache.isPure("CycleB"));
+  }
+
+  @Test
+  public void testPurityIsRememberedUntilInvalidate() throws Exception
+  {
+    assertTrue(cache.isPure("Pure"));
+    define("Pure(EXTERN(URL \"java:de.example.Test.run\"))");
+    assertTrue(cache.isPure("Pure"));
+
+    cache.invalidate();
+    assertFalse(cache.isPure("Pure"));
+  }
+
+  @Test
+  public void testResultsOfPureFunctionsAreRemembered()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    for (int i = 0; i < 3; i++)
+      assertEquals("ab", cache.get("Pure", Arrays.asList("a"), () -> {
+        calls.incrementAndGet();
+        return "ab";
+      }));
+    assertEquals(1, calls.get());
+
+    assertEquals("other", cache.get("Pure", Arrays.asList("b"), () -> "other"));
+  }
+
+  @Test
+  public void testResultsOfImpureFunctionsAreComputed()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    for (int i = 0; i < 3; i++)
+      cache.get("Extern", Arrays.asList("a"), () -> {
+        calls.incrementAndGet();
+        return "x";
+      });
+    assertEquals(3, calls.get());
+  }
+
+  @Test
+  public void testNullIsNotRemembered()
+  {
+    assertNull(cache.get("Pure", Arrays.asList("a"), () -> null));
+    assertEquals("ab", cache.get("Pure", Arrays.asList("a"), () -> "ab"));
+  }
+
+  /**
+   * Parst die Funktionsdefinition conf und legt sie unter ihrem Namen ab.
+   */
+  private void define(String conf) throws Exception
+  {
+    ConfigThingy function = new ConfigThingy("Funktionen", conf).getFirstChild();
+    definitions.put(function.getName(), function);
+  }
+}
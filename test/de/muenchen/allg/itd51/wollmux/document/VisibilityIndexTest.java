@@ -0,0 +1,123 @@
+package de.muenchen.allg.itd51.wollmux.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.muenchen.allg.itd51.wollmux.core.document.VisibilityElement;
+
+public class VisibilityIndexTest
+{
+  private final VisibilityElement a = createElement("A");
+
+  private final VisibilityElement ab = createElement("A", "B");
+
+  private final VisibilityElement c = createElement("C");
+
+  @Test
+  public void testInitialState()
+  {
+    Map<String, Boolean> groupState = new HashMap<>();
+    groupState.put("B", Boolean.FALSE);
+    groupState.put("C", Boolean.TRUE);
+    VisibilityIndex index = new VisibilityIndex(Arrays.asList(a, ab, c), 1,
+        groupState);
+
+    assertTrue(index.isVisible(a));
+    assertFalse(index.isVisible(ab));
+    assertTrue(index.isVisible(c));
+  }
+
+  @Test
+  public void testSetVisibleReturnsElementsOfGroup()
+  {
+    VisibilityIndex index = new VisibilityIndex(Arrays.asList(a, ab, c), 1,
+        new HashMap<>());
+
+    assertEquals(Arrays.asList(a, ab), index.setVisible("A", false));
+    assertEquals(Arrays.asList(ab), index.setVisible("B", false));
+    assertEquals(Collections.emptyList(), index.setVisible("D", false));
+  }
+
+  @Test
+  public void testElementIsVisibleOnlyIfAllGroupsAreVisible()
+  {
+    VisibilityIndex index = new VisibilityIndex(Arrays.asList(a, ab, c), 1,
+        new HashMap<>());
+
+    index.setVisible("A", false);
+    index.setVisible("B", false);
+    assertFalse(index.isVisible(a));
+    assertFalse(index.isVisible(ab));
+    assertTrue(index.isVisible(c));
+
+    index.setVisible("A", true);
+    assertTrue(index.isVisible(a));
+    assertFalse(index.isVisible(ab));
+
+    index.setVisible("B", true);
+    assertTrue(index.isVisible(ab));
+  }
+
+  @Test
+  public void testRepeatedChangeIsCountedOnce()
+  {
+    VisibilityIndex index = new VisibilityIndex(Arrays.asList(ab), 1,
+        new HashMap<>());
+
+    index.setVisible("A", false);
+    index.setVisible("A", false);
+    index.setVisible("A", true);
+    assertTrue(index.isVisible(ab));
+
+    index.setVisible("B", true);
+    assertTrue(index.isVisible(ab));
+  }
+
+  @Test
+  public void testIsValidFor()
+  {
+    Map<String, Boolean> groupState = new HashMap<>();
+    VisibilityIndex index = new VisibilityIndex(Arrays.asList(a), 7, groupState);
+
+    assertTrue(index.isValidFor(7, groupState));
+    assertFalse(index.isValidFor(8, groupState));
+    assertFalse(index.isValidFor(7, new HashMap<>()));
+  }
+
+  /**
+   * Erzeugt ein Sichtbarkeitselement mit den Gruppen groups, das nur über seine
+   * Identität verglichen wird.
+   */
+  private static VisibilityElement createElement(String... groups)
+  {
+    Set<String> groupSet = new HashSet<>(Arrays.asList(groups));
+    return (VisibilityElement) Proxy.newProxyInstance(
+        VisibilityElement.class.getClassLoader(),
+        new Class<?>[] { VisibilityElement.class }, (proxy, method, args) -> {
+          switch (method.getName())
+          {
+          case "getGroups":
+            return groupSet;
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "equals":
+            return proxy == args[0];
+          case "toString":
+            return "VisibilityElement" + groupSet;
+          default:
+            return null;
+          }
+        });
+  }
+}
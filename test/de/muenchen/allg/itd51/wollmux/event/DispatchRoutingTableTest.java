@@ -0,0 +1,158 @@
+package de.muenchen.allg.itd51.wollmux.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.frame.XDispatchResultListener;
+import com.sun.star.util.URL;
+
+public class DispatchRoutingTableTest
+{
+  private final DispatchRoutingTable table = DispatchRoutingTable
+      .of(TestDispatch.class);
+
+  @Test
+  public void testTableIsCreatedOncePerClass()
+  {
+    assertSame(table, DispatchRoutingTable.of(TestDispatch.class));
+  }
+
+  @Test
+  public void testDispatchMethodIsFound() throws Throwable
+  {
+    TestDispatch dispatch = new TestDispatch();
+    MethodHandle method = table
+        .getDispatchMethod(createURL("wollmux:OpenTemplate#Vorlage"));
+    assertNotNull(method);
+    method.invoke(dispatch, "Vorlage", new PropertyValue[0]);
+    assertEquals("opentemplate Vorlage", dispatch.called.get(0));
+  }
+
+  @Test
+  public void testCommandIsComparedCaseInsensitive()
+  {
+    assertTrue(table.canDispatch(createURL("wollmux:open")));
+    assertTrue(table.canDispatch(createURL("WOLLMUX:OPEN")));
+    assertTrue(table.canDispatch(createURL("wollmux:Open#")));
+  }
+
+  @Test
+  public void testPrefixOfCommandIsNotFound()
+  {
+    assertFalse(table.canDispatch(createURL("wollmux:Ope")));
+    assertFalse(table.canDispatch(createURL("wollmux:OpenTemplates")));
+    assertFalse(table.canDispatch(createURL("wollmux:")));
+  }
+
+  @Test
+  public void testUnknownCommandIsNotFound()
+  {
+    assertFalse(table.canDispatch(createURL("wollmux:Unknown")));
+    assertFalse(table.canDispatch(createURL(".uno:Open")));
+    assertFalse(table.canDispatch(createURL(null)));
+  }
+
+  @Test
+  public void testMethodsAreSeparatedBySignature()
+  {
+    URL notifying = createURL("wollmux:Notify");
+    assertNull(table.getDispatchMethod(notifying));
+    assertNotNull(table.getNotifyingDispatchMethod(notifying));
+    assertNull(table.getStatusMethod(notifying));
+
+    URL status = createURL("wollmux:About");
+    assertNotNull(table.getDispatchMethod(status));
+    assertNull(table.getNotifyingDispatchMethod(status));
+    assertNotNull(table.getStatusMethod(status));
+  }
+
+  @Test
+  public void testUnsuitableMethodsAreIgnored()
+  {
+    assertFalse(table.canDispatch(createURL("wollmux:Static")));
+    assertFalse(table.canDispatch(createURL("wollmux:WrongSignature")));
+    assertNull(table.getStatusMethod(createURL("wollmux:WrongStatus")));
+  }
+
+  @Test
+  public void testSameMethodsAsBaseDispatch()
+  {
+    String[] urls = { "wollmux:Open", "wollmux:OpenTemplate#x",
+        "WollMux:Open-Template", "wollmux:Unknown", ".uno:About" };
+    List<String> declared = new ArrayList<>();
+    for (Method m : TestDispatch.class.getDeclaredMethods())
+      declared.add(m.getName());
+    for (String complete : urls)
+    {
+      URL url = createURL(complete);
+      assertEquals(complete,
+          declared.contains(BaseDispatch.getDispatchMethodName(url)),
+          table.canDispatch(url));
+    }
+  }
+
+  private static URL createURL(String complete)
+  {
+    URL url = new URL();
+    url.Complete = complete;
+    return url;
+  }
+
+  static class TestDispatch
+  {
+    private final List<String> called = new ArrayList<>();
+
+    public void dispatch_wollmux_open(String arg, PropertyValue[] props)
+    {
+      called.add("open " + arg);
+    }
+
+    public void dispatch_wollmux_opentemplate(String arg, PropertyValue[] props)
+    {
+      called.add("opentemplate " + arg);
+    }
+
+    public void dispatch_wollmux_about(String arg, PropertyValue[] props)
+    {
+      called.add("about " + arg);
+    }
+
+    public boolean status_wollmux_about()
+    {
+      return true;
+    }
+
+    public void dispatch_wollmux_notify(String arg, PropertyValue[] props,
+        XDispatchResultListener listener)
+    {
+      called.add("notify " + arg);
+    }
+
+    public static void dispatch_wollmux_static(String arg, PropertyValue[] props)
+    {
+      // wird ignoriert
+    }
+
+    public void dispatch_wollmux_wrongsignature(String arg)
+    {
+      // wird ignoriert
+    }
+
+    public String status_wollmux_wrongstatus()
+    {
+      return null;
+    }
+  }
+}
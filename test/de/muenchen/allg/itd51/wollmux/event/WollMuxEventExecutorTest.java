@@ -0,0 +1,240 @@
+package de.muenchen.allg.itd51.wollmux.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.star.text.XTextDocument;
+
+import de.muenchen.allg.itd51.wollmux.event.handlers.WollMuxEvent;
+
+public class WollMuxEventExecutorTest
+{
+  private static final long TIMEOUT = 5;
+
+  private WollMuxEventExecutor executor;
+
+  private List<String> processed;
+
+  @Before
+  public void setUp()
+  {
+    executor = new WollMuxEventExecutor();
+    processed = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @Test
+  public void testDocumentEventsRunInOrder() throws Exception
+  {
+    XTextDocument doc = createDocument();
+    List<String> expected = new ArrayList<>();
+    CompletableFuture<Void> last = null;
+    for (int i = 0; i < 50; i++)
+    {
+      String name = "event" + i;
+      expected.add(name);
+      last = executor.execute(new TestEvent(doc, name), record(name));
+    }
+    last.get(TIMEOUT, TimeUnit.SECONDS);
+    assertEquals(expected, processed);
+  }
+
+  @Test
+  public void testDocumentsRunInParallel() throws Exception
+  {
+    XTextDocument doc1 = createDocument();
+    XTextDocument doc2 = createDocument();
+    CountDownLatch blocker = new CountDownLatch(1);
+    CompletableFuture<Void> blocked = executor.execute(new TestEvent(doc1, "blocked"),
+        await(blocker));
+    executor.execute(new TestEvent(doc2, "other"), record("other")).get(TIMEOUT,
+        TimeUnit.SECONDS);
+    assertFalse(blocked.isDone());
+    blocker.countDown();
+    blocked.get(TIMEOUT, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testGlobalEventWaitsForDocumentEvents() throws Exception
+  {
+    XTextDocument doc = createDocument();
+    CountDownLatch blocker = new CountDownLatch(1);
+    executor.execute(new TestEvent(doc, "document"), () -> {
+      await(blocker).run();
+      processed.add("document");
+    });
+    CompletableFuture<Void> global = executor.execute(new TestEvent(null, "global"),
+        record("global"));
+    CompletableFuture<Void> after = executor.execute(new TestEvent(doc, "after"),
+        record("after"));
+
+    Thread.sleep(100);
+    assertFalse(global.isDone());
+    blocker.countDown();
+    after.get(TIMEOUT, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList("document", "global", "after"), processed);
+  }
+
+  @Test
+  public void testWaitingEventIsReplacedByNewerEvent() throws Exception
+  {
+    XTextDocument doc = createDocument();
+    CountDownLatch blocker = new CountDownLatch(1);
+    executor.execute(new TestEvent(doc, "blocker"), await(blocker));
+    TestEvent older = new TestEvent(doc, "older", "key");
+    TestEvent other = new TestEvent(doc, "other", "otherKey");
+    TestEvent newer = new TestEvent(doc, "newer", "key");
+    executor.execute(older, record("older"));
+    executor.execute(other, record("other"));
+    CompletableFuture<Void> last = executor.execute(newer, record("newer"));
+
+    blocker.countDown();
+    last.get(TIMEOUT, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList("other", "newer"), processed);
+    assertSame(older, newer.coalesced);
+    assertNull(other.coalesced);
+  }
+
+  @Test
+  public void testStartedEventIsNotReplaced() throws Exception
+  {
+    XTextDocument doc = createDocument();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch blocker = new CountDownLatch(1);
+    executor.execute(new TestEvent(doc, "first", "key"), () -> {
+      started.countDown();
+      await(blocker).run();
+      processed.add("first");
+    });
+    started.await(TIMEOUT, TimeUnit.SECONDS);
+    TestEvent second = new TestEvent(doc, "second", "key");
+    CompletableFuture<Void> last = executor.execute(second, record("second"));
+
+    blocker.countDown();
+    last.get(TIMEOUT, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList("first", "second"), processed);
+    assertNull(second.coalesced);
+  }
+
+  @Test
+  public void testIsEventThread() throws Exception
+  {
+    boolean[] eventThread = new boolean[2];
+    executor.execute(new TestEvent(null, "global"),
+        () -> eventThread[0] = executor.isEventThread()).get(TIMEOUT,
+            TimeUnit.SECONDS);
+    executor.execute(new TestEvent(createDocument(), "document"),
+        () -> eventThread[1] = executor.isEventThread()).get(TIMEOUT,
+            TimeUnit.SECONDS);
+    assertTrue(eventThread[0]);
+    assertTrue(eventThread[1]);
+    assertFalse(executor.isEventThread());
+  }
+
+  private Runnable record(String name)
+  {
+    return () -> processed.add(name);
+  }
+
+  private static Runnable await(CountDownLatch latch)
+  {
+    return () -> {
+      try
+      {
+        latch.await(TIMEOUT, TimeUnit.SECONDS);
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  /**
+   * Erzeugt ein Dokument, das nur über seine Identität verglichen wird.
+   */
+  private static XTextDocument createDocument()
+  {
+    return (XTextDocument) Proxy.newProxyInstance(
+        XTextDocument.class.getClassLoader(),
+        new Class<?>[] { XTextDocument.class }, (proxy, method, args) -> {
+          switch (method.getName())
+          {
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "equals":
+            return proxy == args[0];
+          case "toString":
+            return "TestDocument@" + System.identityHashCode(proxy);
+          default:
+            return null;
+          }
+        });
+  }
+
+  static class TestEvent implements WollMuxEvent
+  {
+    private final XTextDocument doc;
+
+    private final String name;
+
+    private final Object coalescingKey;
+
+    private WollMuxEvent coalesced;
+
+    TestEvent(XTextDocument doc, String name)
+    {
+      this(doc, name, null);
+    }
+
+    TestEvent(XTextDocument doc, String name, Object coalescingKey)
+    {
+      this.doc = doc;
+      this.name = name;
+      this.coalescingKey = coalescingKey;
+    }
+
+    @Override
+    public void process()
+    {
+      // Die Tests übergeben die Bearbeitung direkt an den Executor.
+    }
+
+    @Override
+    public XTextDocument getDocument()
+    {
+      return doc;
+    }
+
+    @Override
+    public Object getCoalescingKey()
+    {
+      return coalescingKey;
+    }
+
+    @Override
+    public void coalesce(WollMuxEvent older)
+    {
+      coalesced = older;
+    }
+
+    @Override
+    public String toString()
+    {
+      return name;
+    }
+  }
+}